@@ -13,7 +13,9 @@
  */
 
 import java.lang.Integer;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.function.LongSupplier;
 import java.awt.Graphics;
 import java.awt.Color;
 
@@ -27,6 +29,13 @@ import java.awt.Color;
  * the skip list and learn how skip lists actually work.
  */
 public class SkipList {
+    // These are the engines that a skip list can be constructed with.
+    // The randomized engine decides tower heights by flipping a coin.
+    // The deterministic engine is a 1-2-3 skip list which keeps 1 to 3
+    // nodes between any two neighboring nodes of the level above.
+    public static final int RANDOMIZED = 0;
+    public static final int DETERMINISTIC = 1;
+
     // These are the level 0 negetive and posetive infinit nodes.
     private SkipListNode levZeroNegInfNode;
     private SkipListNode levZeroPosInfNode;
@@ -40,16 +49,95 @@ public class SkipList {
     // This is used to keep track of the number of levels existing for
     // the skip list.
     private int totalHeight;
+    private int engine;
+    private Random rand;
+    private boolean verbose;
     private int nodeWidth, nodeHeight, hNodeSpace, vNodeSpace;
 
+    // These are the operation metrics. They are plain counters which
+    // are only ever added to, so keeping them costs a few additions per
+    // operation and no allocation. GetStats copies them into a
+    // SkipListStats snapshot.
+    private long finds, inserts, removes;
+    private long comparisons, horizontalHops, verticalHops;
+    private int lastComparisons, lastHorizontalHops, lastVerticalHops;
+    private long[] findLatency, insertLatency, removeLatency;
+
+    // These are used by the adaptive mode. In adaptive mode the keys
+    // that are found often are promoted to taller towers so that they
+    // are reached with fewer hops, and the access counts are halved
+    // every agingInterval finds so that keys which cool off get
+    // demoted again. Rather than walking every key, an aging only
+    // moves agingEpoch on, and a count is halved once for each epoch
+    // it missed when its key is next found. Only the promoted towers
+    // are visited to be demoted, so promotedNodes keeps their level
+    // zero nodes. A node that is unlinked, or demoted all the way, is
+    // dropped from promotedNodes at the next aging.
+    private boolean adaptive;
+    private int promoteThreshold;
+    private int agingInterval;
+    private int accessesSinceAging;
+    private int agingEpoch;
+    private ArrayList<SkipListNode> promotedNodes;
+    private long agedTowers;
+
+    // These are used by the search finger. When the finger is enabled
+    // the searches remember the node they left each level from, and a
+    // search for a nearby key starts from the lowest of those nodes
+    // whose range still covers the key instead of the top left node.
+    // Each thread has a finger of its own, so that threads which take
+    // turns at the skip list do not move each other's finger. Whenever
+    // a node might have been unlinked the fingerGeneration is moved on,
+    // and a finger of an older generation is forgotten the next time
+    // its thread searches, as its nodes might no longer be part of the
+    // skip list.
+    private boolean fingerEnabled;
+    private ThreadLocal<SkipListFinger> finger;
+    private int fingerGeneration;
+
+    // This is the key where the next ReapExpired call starts to look
+    // for expired keys. Expiry times are kept in nanoseconds since
+    // TIME_ORIGIN, as System.nanoTime() does not jump when the wall
+    // clock is set and its own origin can be any value. A clock set
+    // with SetClock is used instead, so that tests can move time.
+    private static final long TIME_ORIGIN = System.nanoTime();
+    private int reapCursor;
+    private LongSupplier clock;
+
+    // This is the optional negative lookup filter. When it is set, it
+    // holds a fingerprint of every key in the skip list so that a Find
+    // for a key which is definitely absent returns without descending.
+    // The filter grows as keys are added, but is dropped rather than
+    // grown past filterMaxBytes.
+    private SkipListFilter filter;
+    private long filterRejects, filterFalsePositives;
+    private long filterMaxBytes;
+
     /**
      * Construct an empty SkipList.
      *
      * Create an empty SkipList. That is a skip list with only a
      * negative infinity node and a posetive infinity node on the zero
-     * level.
+     * level. The skip list uses the randomized engine.
      */
     public SkipList() {
+        this(RANDOMIZED);
+    }
+
+    /**
+     * Construct an empty SkipList using the given engine.
+     *
+     * Create an empty SkipList which uses either the randomized engine
+     * or the deterministic engine. Both engines are used through the
+     * same Find, Insert and Remove functions. The deterministic engine
+     * gives worst case logarithmic searches and updates instead of
+     * expected ones.
+     * @param eng Either RANDOMIZED or DETERMINISTIC.
+     */
+    public SkipList(int eng) {
+        engine = (eng == DETERMINISTIC) ? DETERMINISTIC : RANDOMIZED;
+        rand = new Random();
+        verbose = true;
         levZeroNegInfNode = null;
         levZeroPosInfNode = null;
         totalHeight = 0;
@@ -57,6 +145,30 @@ public class SkipList {
         nodeHeight = 20;
         hNodeSpace = 30;
         vNodeSpace = 20;
+
+        findLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+        insertLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+        removeLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+
+        adaptive = false;
+        promoteThreshold = 8;
+        agingInterval = 1024;
+        accessesSinceAging = 0;
+        agingEpoch = 0;
+        promotedNodes = new ArrayList<SkipListNode>();
+        agedTowers = 0;
+
+        fingerEnabled = false;
+        finger = new ThreadLocal<SkipListFinger>();
+        fingerGeneration = 0;
+
+        reapCursor = Integer.MIN_VALUE + 1;
+        clock = null;
+
+        filter = null;
+        filterRejects = 0;
+        filterFalsePositives = 0;
+        filterMaxBytes = Long.MAX_VALUE;
     
         AddEmptyLevelAbove();
     }
@@ -72,31 +184,108 @@ public class SkipList {
      * @retval null Failed to find node with the given key.
      */
     public SkipListNode Find(int k) {
-        SkipListNode p, q;
+        SkipListNode found;
+
+        found = FindNode(k);
+
+        // A key whose time to live has run out is removed the first
+        // time it is looked for.
+        if ((found != null) && IsExpired(GetBaseNode(found))) {
+            RemoveKey(k, false);
+            return null;
+        }
+
+        if ((found != null) && adaptive) {
+            found = RecordAccess(found);
+        }
+
+        return found;
+    }
+
+    /**
+     * Search for the top node of a key.
+     *
+     * The FindNode function is the search used by Find. It returns the
+     * top node of the tower with the given key without counting it as
+     * an access for the adaptive mode.
+     * @param k The key value to search for.
+     * @return The top node with matching key, or null.
+     * @retval null Failed to find node with the given key.
+     */
+    private SkipListNode FindNode(int k) {
+        SkipListNode[] fingerNodes;
+        SkipListNode p, q, found;
         Integer key;
+        long startTime;
+        int comps, hHops, vHops, level;
+
+        startTime = System.nanoTime();
+
+        if ((filter != null) && !filter.MightContain(k)) {
+            filterRejects = filterRejects + 1;
+            finds = finds + 1;
+            RecordSearch(0, 0, 0);
+            RecordLatency(findLatency, startTime);
+            return null;
+        }
 
         key = new Integer(k);
 
-        p = topLevNegInfNode;
+        fingerNodes = CurrentFinger();
+        level = FingerLevel(fingerNodes, k);
+        if (level < 0) {
+            level = totalHeight - 1;
+            p = topLevNegInfNode;
+        } else {
+            p = fingerNodes[level];
+        }
         q = null;
+        found = null;
+        comps = 0;
+        hHops = 0;
+        vHops = 0;
 
         do {
             p.touched = true;
             p.vtouched = true;
+            comps = comps + 1;
             while (p.nodeAfter.key.intValue() <= key.intValue()) {
                 p.nodeAfter.touched = true;
+                comps = comps + 1;
                 if (p.nodeAfter.key.equals(key)) {
-                    return p.nodeAfter;
+                    found = p.nodeAfter;
+                    break;
                 }
                 p = p.nodeAfter;
+                hHops = hHops + 1;
+                comps = comps + 1;
+            }
+
+            if (found != null) {
+                break;
             }
             
             p.nodeAfter.touched = true;
+            if (fingerNodes != null) {
+                fingerNodes[level] = p;
+            }
+            level = level - 1;
             q = p;
             p = p.nodeBelow;
+            if (p != null) {
+                vHops = vHops + 1;
+            }
         } while (p != null);
 
-        return null;
+        if ((found == null) && (filter != null)) {
+            filterFalsePositives = filterFalsePositives + 1;
+        }
+
+        finds = finds + 1;
+        RecordSearch(comps, hHops, vHops);
+        RecordLatency(findLatency, startTime);
+
+        return found;
     }
 
     /**
@@ -107,26 +296,72 @@ public class SkipList {
      * @param k The key of the nodes you would like to remove.
      * @return The true/false depending on success or failure.
      * @retval true Successfully removed key from the skip list.
-     * @retval false Failed to find the given key in the skip list.
+     * @retval false Failed to find the given key in the skip list, or
+     * its time to live had run out.
      */
     public boolean Remove(int k) {
-        SkipListNode p;
+        SkipListNode base;
+        long startTime;
 
-        p = Find(k);
-        if (p == null) {
-            return false;
+        startTime = System.nanoTime();
+        removes = removes + 1;
+
+        base = RemoveKey(k, true);
+
+        RecordLatency(removeLatency, startTime);
+
+        return (base != null) && !IsExpired(base);
+    }
+
+    /**
+     * Remove a key from the skip list.
+     *
+     * The RemoveKey function does the work of Remove for either engine
+     * and keeps the negative lookup filter up to date. Both engines
+     * look for the key with SearchPath, so the search of a Remove adds
+     * to the comparisons and hops but is not counted as a find. The
+     * removal of expired keys is housekeeping rather than a request of
+     * the caller, so it leaves its search out of the metrics entirely.
+     * @param k The key of the nodes you would like to remove.
+     * @param counted True to add the search to the operation metrics.
+     * @return The level zero node of the removed tower, or null.
+     * @retval null Failed to find the given key in the skip list.
+     */
+    private SkipListNode RemoveKey(int k, boolean counted) {
+        SkipListNode p, base;
+
+        if ((filter != null) && !filter.MightContain(k)) {
+            return null;
         }
 
-        // If I get this far then I know that I have the highest node
-        // with the given key. This allows me to work my way down the
-        // tower removing the nodes and connecting their neighbors
-        // properly.
+        if (engine == DETERMINISTIC) {
+            base = RemoveDeterministic(k, counted);
+        } else {
+            p = SearchPath(k, counted)[0].nodeAfter;
+            if (p.key.intValue() != k) {
+                return null;
+            }
+            while (p.nodeAbove != null) {
+                p = p.nodeAbove;
+            }
+
+            // If I get this far then I know that I have the highest
+            // node with the given key. This allows me to work my way
+            // down the tower removing the nodes and connecting their
+            // neighbors properly.
 
-        while (p != null) {
-            p = RemoveNode(p);
+            base = p;
+            while (p != null) {
+                base = p;
+                p = RemoveNode(p);
+            }
         }
 
-        return true;
+        if ((base != null) && (filter != null)) {
+            filter.Remove(k);
+        }
+
+        return base;
     }
     
     /**
@@ -140,18 +375,59 @@ public class SkipList {
      * @retval null A node with the provided key already exists.
      */
     public SkipListNode Insert(int k) {
+        return Insert(k, 0);
+    }
+
+    /**
+     * Insert a node with a time to live into the skip list.
+     *
+     * Insert a node into the skip list which is removed once the given
+     * number of milliseconds have passed. An expired key is removed the
+     * first time Find or Insert comes across it, or by ReapExpired.
+     * Note: If a node exists with the provided key already and has not
+     * expired a new node will not be inserted.
+     * @param k The key value to use for the node to insert.
+     * @param ttlMillis The time to live in milliseconds, 0 for forever.
+     * @return The node that was just inserted, or null if failure.
+     * @retval null A node with the provided key already exists, or the
+     * time to live is negative.
+     */
+    public SkipListNode Insert(int k, long ttlMillis) {
         SkipListNode p, q, newNode;
-        Random rand;
+        long startTime;
 
-        rand = new Random();
+        if (ttlMillis < 0) {
+            return null;
+        }
+
+        startTime = System.nanoTime();
+        inserts = inserts + 1;
+
+        if (engine == DETERMINISTIC) {
+            q = InsertDeterministic(k);
+            if (q != null) {
+                SetExpiry(q, ttlMillis);
+                FilterAdd(k);
+            }
+            RecordLatency(insertLatency, startTime);
+            return q;
+        }
 
         newNode = new SkipListNode(k);
         
         p = InsertSearch(k);
 
+        // If the node which already has the key has expired then it is
+        // removed and the search is done again.
+        if (p.key.equals(newNode.key) && IsExpired(p)) {
+            RemoveKey(k, false);
+            p = InsertSearch(k);
+        }
+
         // If I find a node which already has the key then don't perform
         // the insert.
         if (p.key.equals(newNode.key)) {
+            RecordLatency(insertLatency, startTime);
             return null;
         }
 
@@ -171,7 +447,9 @@ public class SkipList {
         // received then I am done and don't want to insert it on the
         // next level up. Note: true = heads, false = tails.
         while (rand.nextBoolean() == true) {
-            System.out.println("Coin landed HEADs side up.");
+            if (verbose) {
+                System.out.println("Coin landed HEADs side up.");
+            }
             while ((p.nodeAbove == null) && !(IsNegInfNode(p))) {
                 p = p.nodeBefore;
             }
@@ -188,209 +466,1762 @@ public class SkipList {
             q = InsertAfterAbove(p, q, k);
         }
 
-        System.out.println("Stopped flipping coin because hit TAILs.");
+        if (verbose) {
+            System.out.println("Stopped flipping coin because hit TAILs.");
+        }
+
+        SetExpiry(q, ttlMillis);
+        FilterAdd(k);
+        RecordLatency(insertLatency, startTime);
 
         return q;
     }
 
     /**
-     * Obtain the number of levels.
-     *
-     * Obtain the number of levels that exist within the skip list.
-     * Note: Level 0 counts as one of the levels.
-     * @return Number of levels in the skip list.
-     */
-    public int GetNumLevels() {
-        return totalHeight;
-    }
-    
-    /**
-     * Clear the touched flags.
+     * Remove expired keys.
      *
-     * The ClearTouchedFlag function resets all the touched flags to not
-     * touched. This allows for graphically displaying the path of the
-     * algorithms. If this is not called in between calls to diffierent
-     * algorithms then the touch flags will carry over and it will not
-     * correctly give a graphical representation of the algorithm path.
+     * Walk a slice of level zero removing the keys whose time to live
+     * has run out. Each call carries on from where the previous call
+     * stopped and wraps around at the end of the skip list, so calling
+     * this regularly with a small slice removes every expired key
+     * without ever walking the whole skip list at once. The reaping is
+     * left out of the operation metrics.
+     * @param maxNodes The most level zero nodes to look at.
+     * @return The number of expired keys that were removed.
      */
-    public void ClearTouchedFlag() {
-        SkipListNode curBaseNode, curNode;
+    public int ReapExpired(int maxNodes) {
+        SkipListNode p, next;
+        int visited, numExpired;
+        long now;
 
-        curBaseNode = levZeroNegInfNode;
+        if (maxNodes <= 0) {
+            return 0;
+        }
 
-        while (curBaseNode != null) {
-            curBaseNode.touched = false;
-            curBaseNode.vtouched = false;
-            curBaseNode.rtouched = false;
-        
-            curNode = curBaseNode.nodeAbove;
-        
-            while (curNode != null) {
-                curNode.touched = false;
-                curNode.vtouched = false;
-                curNode.rtouched = false;
-                
-                curNode = curNode.nodeAbove;
+        now = Now();
+        numExpired = 0;
+
+        p = SearchPath(reapCursor, false)[0].nodeAfter;
+
+        for (visited = 0; visited < maxNodes; visited++) {
+            if (IsPosInfNode(p)) {
+                reapCursor = Integer.MIN_VALUE + 1;
+                break;
             }
-        
-            curBaseNode = curBaseNode.nodeAfter;
+
+            // Removing a key only unlinks its own tower from level
+            // zero, so the node after it is still in the skip list.
+            next = p.nodeAfter;
+            reapCursor = p.key.intValue() + 1;
+
+            if ((p.expiresAt != 0) && (p.expiresAt <= now)) {
+                RemoveKey(p.key.intValue(), false);
+                numExpired = numExpired + 1;
+            }
+
+            p = next;
         }
+
+        return numExpired;
     }
- 
+
     /**
-     * Check if node is negative infinity node.
+     * Obtain the keys in a range.
      *
-     * Determine if the passed node is a negative infinity node.
-     * @return Value signifying if the node is or is not neg inf node.
-     * @retval true The node IS a negative infinity node.
-     * @retval false The node IS NOT a negative infinity node.
+     * Obtain every key which is greater than or equal to lo and less
+     * than or equal to hi. The range is found with a single search for
+     * lo followed by a walk along level zero. Expired keys are left out.
+     * @param lo The smallest key of the range.
+     * @param hi The largest key of the range.
+     * @return The keys of the range in increasing order.
      */
-    private boolean IsNegInfNode(SkipListNode node) {
-        Integer key;
+    public int[] Range(int lo, int hi) {
+        SkipListNode start, p;
+        int[] keys;
+        int count;
+
+        start = NextLive(SearchPath(lo)[0].nodeAfter);
+
+        count = 0;
+        p = start;
+        while (!IsPosInfNode(p) && (p.key.intValue() <= hi)) {
+            count = count + 1;
+            p = NextLive(p.nodeAfter);
+        }
 
-        key = Integer.MIN_VALUE;
+        keys = new int[count];
 
-        if (node.key.equals(key)) {
-            return true;
-        } else {
-            return false;
+        count = 0;
+        p = start;
+        while (count < keys.length) {
+            keys[count] = p.key.intValue();
+            count = count + 1;
+            p = NextLive(p.nodeAfter);
         }
+
+        return keys;
     }
 
     /**
-     * Check if node is posetive infinity node.
+     * Enable or disable the coin flip messages.
      *
-     * Determine if the passed node is a posetive infinity node.
-     * @return Value signifying if the node is or is not pos inf node.
-     * @retval true The node IS a posetive infinity node.
-     * @retval false The node IS NOT a posetive infinity node.
+     * The randomized Insert prints every coin flip so that people using
+     * the applet can follow along. Programs which insert many keys
+     * should turn the messages off.
+     * @param enabled True to print the coin flip messages.
      */
-    private boolean IsPosInfNode(SkipListNode node) {
-        Integer key;
-
-        key = Integer.MAX_VALUE;
-
-        if (node.key.equals(key)) {
-            return true;
-        } else {
-            return false;
-        }
+    public void SetVerbose(boolean enabled) {
+        verbose = enabled;
     }
-    
+
     /**
-     * Remove a single instance of a node.
+     * Seed the coin.
      *
-     * The RemoveNode function only removes an instance of a node on a
-     * single level. It is designed to be used by the Remove function.
-     * This function removes a node from a level and returns the node
-     * that exists below it so that it can be removed next in the Remove
-     * function.
-     * @param node The node to remove.
-     * @return The node below the node being removed, or null if none.
-     * @retval null There exist no more nodes below this node.
+     * Seed the coin flipped by the randomized engine so that the same
+     * sequence of operations always builds the same towers. This is
+     * used to replay a failing stress run.
+     * @param seed The seed for the coin.
      */
-    private SkipListNode RemoveNode(SkipListNode node) {
-        SkipListNode before;
-        SkipListNode after;
-        
-        before = node.nodeBefore;
-        after = node.nodeAfter;
-        
-        before.rtouched = true;
-        after.rtouched = true;
-        
-        node.nodeAbove = null;
+    public void SetSeed(long seed) {
+        rand.setSeed(seed);
+    }
 
-        before.nodeAfter = after;
-        after.nodeBefore = before;
-        
-        return node.nodeBelow;
+    /**
+     * Set the clock used for expiry.
+     *
+     * Replace the clock that times to live are measured with. This is
+     * used to test expiry without waiting for keys to expire. Keys that
+     * already have an expiry time keep it, so the clock should be set
+     * while the skip list is empty.
+     * @param nanoClock A clock returning nanoseconds which are never
+     * negative and never go backwards, or null for the system clock.
+     */
+    public void SetClock(LongSupplier nanoClock) {
+        clock = nanoClock;
     }
-  
+
     /**
-     * Add an empty level to the top.
+     * Check the structure of the skip list.
      *
-     * Add an empty level to the top of the skip list structure. An
-     * empty level only consists of a negative infinity node and a
-     * posetive infinity node.
+     * Walk every level of the skip list checking that the keys of each
+     * level are strictly increasing, that every nodeAfter/nodeBefore and
+     * nodeAbove/nodeBelow pair agree, that every node above level zero
+     * sits on a node with the same key, and that totalHeight matches
+     * the levels. For the deterministic engine it also checks the gap
+     * bounds and the empty top level, and with a negative lookup filter
+     * that every key passes the filter. This takes time linear in the
+     * size of the skip list and is meant for testing.
+     * @return A description of the first problem found, or null.
+     * @retval null The skip list is consistent.
      */
-    private void AddEmptyLevelAbove() {
-        if ((levZeroNegInfNode == null) && (levZeroPosInfNode == null)) {
-            levZeroNegInfNode = new SkipListNode(Integer.MIN_VALUE);
-            levZeroPosInfNode = new SkipListNode(Integer.MAX_VALUE);
-            
-            // Using Integer.MIN_VALUE as the negative infinit and
-            // Integer.MAX_VALUE as the posetive infinit. Hence, I am
-            // reducing the set of acceptable intergers for keys by two.
-            levZeroNegInfNode.nodeAfter = levZeroPosInfNode;
-            levZeroPosInfNode.nodeBefore = levZeroNegInfNode;
+    public String CheckInvariants() {
+        SkipListNode negInf, posInf, p;
+        int level, count, prevCount, numAbove, gap;
+
+        negInf = levZeroNegInfNode;
+        posInf = levZeroPosInfNode;
+        level = 0;
+        prevCount = 0;
+
+        while (negInf != null) {
+            if (posInf == null) {
+                return "level " + level + " has no posetive infinity node";
+            }
+            if (!IsNegInfNode(negInf) || !IsPosInfNode(posInf)) {
+                return "level " + level + " has a bad infinity node";
+            }
+            if ((negInf.nodeBefore != null) || (posInf.nodeAfter != null)) {
+                return "level " + level + " extends past infinity";
+            }
 
-            topLevNegInfNode = levZeroNegInfNode;
-            topLevPosInfNode = levZeroPosInfNode;
-        } else {
-            SkipListNode newNegInfNode;
-            SkipListNode newPosInfNode;
+            count = 0;
+            numAbove = 0;
+            gap = 0;
+            p = negInf;
+            while (p != posInf) {
+                if (p.nodeAfter == null) {
+                    return "level " + level + " ends without posetive " +
+                        "infinity after " + p.key;
+                }
+                if (p.nodeAfter.nodeBefore != p) {
+                    return "level " + level + " nodeBefore of " +
+                        p.nodeAfter.key + " is not " + p.key;
+                }
+                if (p.key.intValue() >= p.nodeAfter.key.intValue()) {
+                    return "level " + level + " key " + p.nodeAfter.key +
+                        " is not greater than " + p.key;
+                }
 
-            newNegInfNode = new SkipListNode(Integer.MIN_VALUE);
-            newPosInfNode = new SkipListNode(Integer.MAX_VALUE);
+                if (level == 0) {
+                    if (p.nodeBelow != null) {
+                        return "level 0 node " + p.key + " has a node below";
+                    }
+                } else if ((p.nodeBelow == null) ||
+                           (p.nodeBelow.nodeAbove != p) ||
+                           !p.nodeBelow.key.equals(p.key)) {
+                    return "level " + level + " node " + p.key +
+                        " does not sit on its tower";
+                }
 
-            newNegInfNode.nodeAfter = newPosInfNode;
-            newPosInfNode.nodeBefore = newNegInfNode;
+                if (p.nodeAbove != null) {
+                    if (p.nodeAbove.nodeBelow != p) {
+                        return "level " + level + " node " + p.key +
+                            " is not below its nodeAbove";
+                    }
+                    if (!IsNegInfNode(p)) {
+                        numAbove = numAbove + 1;
+                    }
+                }
 
-            newNegInfNode.nodeBelow = topLevNegInfNode;
-            newPosInfNode.nodeBelow = topLevPosInfNode;
+                if ((engine == DETERMINISTIC) && (level > 0)) {
+                    gap = CountGap(p);
+                    if ((gap > 3) || ((gap == 0) && (prevCount > 0))) {
+                        return "level " + level + " gap after " + p.key +
+                            " has " + gap + " nodes";
+                    }
+                }
 
-            topLevNegInfNode.nodeAbove = newNegInfNode;
-            topLevPosInfNode.nodeAbove = newPosInfNode;
+                if (!IsNegInfNode(p)) {
+                    count = count + 1;
+                    if ((level == 0) && (filter != null) &&
+                        !filter.MightContain(p.key.intValue())) {
+                        return "key " + p.key + " is missing from the filter";
+                    }
+                }
 
-            topLevNegInfNode = newNegInfNode;
-            topLevPosInfNode = newPosInfNode;
+                p = p.nodeAfter;
+            }
+
+            if ((posInf.nodeAbove != null) &&
+                (posInf.nodeAbove.nodeBelow != posInf)) {
+                return "level " + level + " posetive infinity tower broken";
+            }
+
+            prevCount = count;
+            negInf = negInf.nodeAbove;
+            posInf = posInf.nodeAbove;
+            level = level + 1;
+
+            // The nodes that have a node above must be exactly the nodes
+            // of the next level, which is counted on the next pass.
+            if ((negInf != null) && (numAbove != CountLevel(negInf))) {
+                return "level " + level + " does not match the towers " +
+                    "below it";
+            }
         }
 
-        totalHeight = totalHeight + 1;
+        if (posInf != null) {
+            return "posetive infinity tower is taller than the negative";
+        }
+        if (level != totalHeight) {
+            return "totalHeight is " + totalHeight + " but there are " +
+                level + " levels";
+        }
+        if ((engine == DETERMINISTIC) && (prevCount != 0)) {
+            return "top level is not empty";
+        }
+
+        return null;
     }
 
     /**
-     * Search for relative insert node.
+     * Create the union of two skip lists.
      *
-     * This function searches for a node to use for a relative insert.
-     * This function is NOT designed to be used to find a node with a
-     * given k. Note: This function can return a node which has the same
-     * key as the key that was searched for. This should be checked for
-     * and if it is the case an insert should NOT be performed.
-     * @param k The key value to search for (norm key of node to add).
-     * @return The largest keyed node less than or equal to key.
+     * Create a new skip list holding the keys which are in this skip
+     * list, the other skip list, or both. The new skip list is built in
+     * a single merged walk along level zero of both skip lists. Keys
+     * keep their time to live, and expired keys are left out of this
+     * and the other set operations.
+     * @param other The skip list to take the union with.
+     * @return A new skip list using the same engine as this one.
      */
-    private SkipListNode InsertSearch(int k) {
-        SkipListNode p, q;
-        Integer key;
+    public SkipList Union(SkipList other) {
+        SkipList result;
+        SkipListNode a, b;
+
+        result = NewEmptyList();
+
+        a = NextLive(levZeroNegInfNode.nodeAfter);
+        b = NextLive(other.levZeroNegInfNode.nodeAfter);
+
+        while (!IsPosInfNode(a) || !IsPosInfNode(b)) {
+            if (a.key.intValue() < b.key.intValue()) {
+                result.AppendKey(a.key.intValue(), a.expiresAt);
+                a = NextLive(a.nodeAfter);
+            } else if (b.key.intValue() < a.key.intValue()) {
+                result.AppendKey(b.key.intValue(), b.expiresAt);
+                b = NextLive(b.nodeAfter);
+            } else {
+                result.AppendKey(a.key.intValue(),
+                    LaterExpiry(a.expiresAt, b.expiresAt));
+                a = NextLive(a.nodeAfter);
+                b = NextLive(b.nodeAfter);
+            }
+        }
 
-        key = new Integer(k);
-        
-        p = topLevNegInfNode;
+        return result;
+    }
+
+    /**
+     * Create the intersection of two skip lists.
+     *
+     * Create a new skip list holding the keys which are in both this
+     * skip list and the other skip list. The new skip list is built in
+     * a single merged walk along level zero of both skip lists.
+     * @param other The skip list to take the intersection with.
+     * @return A new skip list using the same engine as this one.
+     */
+    public SkipList Intersect(SkipList other) {
+        SkipList result;
+        SkipListNode a, b;
+
+        result = NewEmptyList();
+
+        a = NextLive(levZeroNegInfNode.nodeAfter);
+        b = NextLive(other.levZeroNegInfNode.nodeAfter);
+
+        while (!IsPosInfNode(a) && !IsPosInfNode(b)) {
+            if (a.key.intValue() < b.key.intValue()) {
+                a = NextLive(a.nodeAfter);
+            } else if (b.key.intValue() < a.key.intValue()) {
+                b = NextLive(b.nodeAfter);
+            } else {
+                result.AppendKey(a.key.intValue(), a.expiresAt);
+                a = NextLive(a.nodeAfter);
+                b = NextLive(b.nodeAfter);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Create the difference of two skip lists.
+     *
+     * Create a new skip list holding the keys which are in this skip
+     * list but not in the other skip list. The new skip list is built
+     * in a single merged walk along level zero of both skip lists.
+     * @param other The skip list whose keys should be left out.
+     * @return A new skip list using the same engine as this one.
+     */
+    public SkipList Difference(SkipList other) {
+        SkipList result;
+        SkipListNode a, b;
+
+        result = NewEmptyList();
+
+        a = NextLive(levZeroNegInfNode.nodeAfter);
+        b = NextLive(other.levZeroNegInfNode.nodeAfter);
+
+        while (!IsPosInfNode(a)) {
+            if (IsPosInfNode(b) || (a.key.intValue() < b.key.intValue())) {
+                result.AppendKey(a.key.intValue(), a.expiresAt);
+                a = NextLive(a.nodeAfter);
+            } else if (b.key.intValue() < a.key.intValue()) {
+                b = NextLive(b.nodeAfter);
+            } else {
+                a = NextLive(a.nodeAfter);
+                b = NextLive(b.nodeAfter);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Split the skip list at a key.
+     *
+     * Move every key greater than or equal to the given key into a new
+     * skip list. The towers are not copied. Each level is cut after the
+     * node the search for the key left it from, so the split takes time
+     * logarithmic in the size of the skip list. If the negative lookup
+     * filter is set, the moved keys also have to be removed from it,
+     * which takes time linear in the number of moved keys.
+     * @param k The smallest key to move into the new skip list.
+     * @return A new skip list, using the same engine, with the keys.
+     */
+    public SkipList Split(int k) {
+        SkipList right;
+        SkipListNode[] path, rightPath;
+        SkipListNode pred, first, newPos, rightNeg, p;
+        int level, i, kept;
+
+        path = SearchPath(k);
+
+        right = NewEmptyList();
+        while (right.totalHeight < totalHeight) {
+            right.AddEmptyLevelAbove();
+        }
+
+        rightPath = new SkipListNode[totalHeight];
+
+        // The right skip list takes over the posetive infinity tower,
+        // and this skip list takes the new one of the right skip list.
+        newPos = right.levZeroPosInfNode;
+        rightNeg = right.levZeroNegInfNode;
+
+        for (level = 0; level < totalHeight; level++) {
+            pred = path[level];
+            first = pred.nodeAfter;
+
+            rightNeg.nodeAfter = first;
+            first.nodeBefore = rightNeg;
+
+            pred.nodeAfter = newPos;
+            newPos.nodeBefore = pred;
+
+            rightPath[level] = rightNeg;
+            newPos = newPos.nodeAbove;
+            rightNeg = rightNeg.nodeAbove;
+        }
+
+        p = right.levZeroPosInfNode;
+        right.levZeroPosInfNode = levZeroPosInfNode;
+        levZeroPosInfNode = p;
+
+        p = right.topLevPosInfNode;
+        right.topLevPosInfNode = topLevPosInfNode;
+        topLevPosInfNode = p;
+
+        fingerGeneration = fingerGeneration + 1;
+
+        // The promoted towers that moved are aged by the right skip
+        // list from now on.
+        right.agingEpoch = agingEpoch;
+        kept = 0;
+        for (i = 0; i < promotedNodes.size(); i++) {
+            p = promotedNodes.get(i);
+            if (p.key.intValue() >= k) {
+                right.promotedNodes.add(p);
+            } else {
+                promotedNodes.set(kept, p);
+                kept = kept + 1;
+            }
+        }
+        promotedNodes.subList(kept, promotedNodes.size()).clear();
+
+        if (filter != null) {
+            p = right.levZeroNegInfNode.nodeAfter;
+            while (!IsPosInfNode(p)) {
+                filter.Remove(p.key.intValue());
+                p = p.nodeAfter;
+            }
+        }
+
+        TrimAfterCut(path);
+        right.TrimAfterCut(rightPath);
+
+        return right;
+    }
+
+    /**
+     * Join another skip list onto the end.
+     *
+     * Move every key of the other skip list onto the end of this skip
+     * list, leaving the other skip list empty. The towers are not
+     * copied. The two skip lists are made the same height and then each
+     * level is linked across, so the join takes time logarithmic in the
+     * size of the skip lists. If the negative lookup filter is set, the
+     * moved keys also have to be added to it, which takes time linear in
+     * the number of moved keys.
+     * @param other The skip list whose keys are all greater than ours.
+     * @return The true/false depending on success or failure.
+     * @retval false The other skip list has a key which is not greater
+     * than every key of this skip list, or uses a different engine.
+     */
+    public boolean Join(SkipList other) {
+        SkipListNode[] path;
+        SkipListNode myPos, otherNeg, last, first, p;
+        int level;
+
+        if ((other == this) || (other.engine != engine)) {
+            return false;
+        }
+
+        last = levZeroPosInfNode.nodeBefore;
+        first = other.levZeroNegInfNode.nodeAfter;
+        if (!IsNegInfNode(last) && !IsPosInfNode(first) &&
+            (last.key.intValue() >= first.key.intValue())) {
+            return false;
+        }
+
+        while (totalHeight < other.totalHeight) {
+            AddEmptyLevelAbove();
+        }
+        while (other.totalHeight < totalHeight) {
+            other.AddEmptyLevelAbove();
+        }
+
+        path = new SkipListNode[totalHeight];
+
+        myPos = levZeroPosInfNode;
+        otherNeg = other.levZeroNegInfNode;
+
+        for (level = 0; level < totalHeight; level++) {
+            last = myPos.nodeBefore;
+            first = otherNeg.nodeAfter;
+
+            last.nodeAfter = first;
+            first.nodeBefore = last;
+
+            path[level] = last;
+            myPos = myPos.nodeAbove;
+            otherNeg = otherNeg.nodeAbove;
+        }
+
+        levZeroPosInfNode = other.levZeroPosInfNode;
+        topLevPosInfNode = other.topLevPosInfNode;
+
+        fingerGeneration = fingerGeneration + 1;
+
+        if (filter != null) {
+            p = path[0].nodeAfter;
+            while (!IsPosInfNode(p)) {
+                FilterAdd(p.key.intValue());
+                p = p.nodeAfter;
+            }
+        }
+
+        other.levZeroNegInfNode = null;
+        other.levZeroPosInfNode = null;
+        other.totalHeight = 0;
+        other.fingerGeneration = other.fingerGeneration + 1;
+
+        // The access counts of both skip lists are aged from the later
+        // of their epochs on, which at worst ages some of them early.
+        agingEpoch = Math.max(agingEpoch, other.agingEpoch);
+        promotedNodes.addAll(other.promotedNodes);
+        other.promotedNodes = new ArrayList<SkipListNode>();
+        other.AddEmptyLevelAbove();
+        if (other.filter != null) {
+            other.BuildFilter(1, other.filter.GetFingerprintBits());
+        }
+
+        TrimAfterCut(path);
+
+        return true;
+    }
+
+    /**
+     * Obtain the number of levels.
+     *
+     * Obtain the number of levels that exist within the skip list.
+     * Note: Level 0 counts as one of the levels.
+     * @return Number of levels in the skip list.
+     */
+    public int GetNumLevels() {
+        return totalHeight;
+    }
+
+    /**
+     * Obtain the engine.
+     *
+     * Obtain the engine the skip list was constructed with.
+     * @return Either RANDOMIZED or DETERMINISTIC.
+     */
+    public int GetEngine() {
+        return engine;
+    }
+
+    /**
+     * Enable or disable the adaptive mode.
+     *
+     * In adaptive mode every successful Find counts as an access to
+     * the key. Once a key has been accessed promoteThreshold times its
+     * tower is promoted one level, and every further level needs twice
+     * as many accesses as the one before it. Promoted towers never
+     * reach the top level, so the number of levels and the worst case
+     * search are still set by the coin flips. Every agingInterval
+     * accesses the access counts are halved and towers whose count no
+     * longer justifies their promoted levels are demoted by one level.
+     * A count is only halved when its key is next found, and only the
+     * promoted towers are visited by an aging, so the cost of aging
+     * depends on the number of accesses rather than on the number of
+     * keys.
+     * Disabling the adaptive mode leaves the current towers in place.
+     * @param enabled True to enable the adaptive mode.
+     * @param threshold Accesses needed for the first promotion.
+     * @param interval Number of accesses between agings.
+     * @return The true/false depending on success or failure.
+     * @retval false The threshold or interval was not positive, or
+     * the skip list uses the deterministic engine.
+     */
+    public boolean SetAdaptive(boolean enabled, int threshold,
+        int interval) {
+
+        if ((threshold <= 0) || (interval <= 0)) {
+            return false;
+        }
+
+        // Promoting towers would break the gap bounds that the
+        // deterministic engine relies on.
+        if (engine == DETERMINISTIC) {
+            return false;
+        }
+
+        adaptive = enabled;
+        promoteThreshold = threshold;
+        agingInterval = interval;
+        accessesSinceAging = 0;
+
+        return true;
+    }
+
+    /**
+     * Enable or disable the search finger.
+     *
+     * With the search finger enabled, Find and Insert start from the
+     * lowest level whose range still covers the key as left by the
+     * previous search of the same thread, rather than from the top
+     * left node. Searches
+     * for keys close to the previous one, such as with cursors or time
+     * ordered keys, then take time logarithmic in the distance between
+     * the keys rather than in the size of the skip list. Each thread
+     * has a finger of its own, so that threads taking turns at the skip
+     * list under a lock, such as the clients of SkipListServer, each
+     * keep the locality of their own searches.
+     * @param enabled True to enable the search finger.
+     */
+    public void SetFinger(boolean enabled) {
+        fingerEnabled = enabled;
+        fingerGeneration = fingerGeneration + 1;
+    }
+
+    /**
+     * Set up the negative lookup filter.
+     *
+     * Set up a cuckoo filter in front of Find holding a fingerprint of
+     * every key in the skip list. A Find for a key whose fingerprint is
+     * not in the filter returns null after a couple of memory accesses
+     * instead of descending every level. Insert and Remove keep the
+     * filter up to date. The filter doubles in size on its own when it
+     * gets too full, up to 2^30 slots, the most an array can hold, past
+     * which it is removed. Each fingerprint slot takes two bytes, and
+     * the false positive rate is about 8 over 2 to the power of bits at
+     * full load.
+     * @param capacity The number of keys to size the filter for.
+     * @param bits The number of bits per fingerprint, 4 to 16.
+     * @return The true/false depending on success or failure.
+     * @retval false The capacity or number of bits is out of range,
+     * including a capacity too large for 2^30 slots.
+     */
+    public boolean SetFilter(int capacity, int bits) {
+        return SetFilter(capacity, bits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Set up the negative lookup filter within a memory budget.
+     *
+     * Set up the filter like SetFilter(capacity, bits) does, but never
+     * let it take more than the given number of bytes. Once the keys no
+     * longer fit in a filter within the budget the filter is removed,
+     * which GetStats shows as a filter memory of 0 bytes, and every
+     * Find descends the skip list again.
+     * @param capacity The number of keys to size the filter for.
+     * @param bits The number of bits per fingerprint, 4 to 16.
+     * @param maxBytes The most bytes the filter may take.
+     * @return The true/false depending on success or failure.
+     * @retval false The capacity or number of bits is out of range, or
+     * the keys do not fit in a filter within the budget.
+     */
+    public boolean SetFilter(int capacity, int bits, long maxBytes) {
+        if ((capacity <= 0) || (bits < 4) || (bits > 16)) {
+            return false;
+        }
+
+        filterMaxBytes = maxBytes;
+        filterRejects = 0;
+        filterFalsePositives = 0;
+
+        return BuildFilter(capacity, bits);
+    }
+
+    /**
+     * Remove the negative lookup filter.
+     *
+     * Remove the filter so that every Find descends the skip list.
+     */
+    public void DisableFilter() {
+        filter = null;
+    }
+
+    /**
+     * Obtain a snapshot of the operation metrics.
+     *
+     * Obtain a SkipListStats object containing a copy of the counters
+     * gathered by the operations so far along with the tower height
+     * histogram and the number of empty levels. The histogram and empty
+     * level count are computed by walking the skip list, hence this
+     * should not be called on every operation.
+     * @return A snapshot of the skip list metrics.
+     */
+    public SkipListStats GetStats() {
+        SkipListStats stats;
+        SkipListNode curBaseNode, curNode;
+        int height;
+
+        stats = new SkipListStats();
+        stats.finds = finds;
+        stats.inserts = inserts;
+        stats.removes = removes;
+        stats.comparisons = comparisons;
+        stats.horizontalHops = horizontalHops;
+        stats.verticalHops = verticalHops;
+        stats.lastComparisons = lastComparisons;
+        stats.lastHorizontalHops = lastHorizontalHops;
+        stats.lastVerticalHops = lastVerticalHops;
+        stats.findLatency = findLatency.clone();
+        stats.insertLatency = insertLatency.clone();
+        stats.removeLatency = removeLatency.clone();
+        stats.numLevels = totalHeight;
+        stats.agedTowers = agedTowers;
+        stats.filterRejects = filterRejects;
+        stats.filterFalsePositives = filterFalsePositives;
+        if (filter != null) {
+            stats.filterMemoryBytes = filter.GetMemoryBytes();
+            stats.filterFalsePositiveRate = filter.GetFalsePositiveRate();
+        }
+        stats.heightHistogram = new int[totalHeight + 1];
+
+        curBaseNode = levZeroNegInfNode.nodeAfter;
+        while (!IsPosInfNode(curBaseNode)) {
+            height = 0;
+            curNode = curBaseNode;
+            while (curNode != null) {
+                height = height + 1;
+                curNode = curNode.nodeAbove;
+            }
+            stats.heightHistogram[height]++;
+            stats.numKeys++;
+            curBaseNode = curBaseNode.nodeAfter;
+        }
+
+        curNode = levZeroNegInfNode;
+        while (curNode != null) {
+            if (IsPosInfNode(curNode.nodeAfter)) {
+                stats.numEmptyLevels++;
+            }
+            curNode = curNode.nodeAbove;
+        }
+
+        return stats;
+    }
+
+    /**
+     * Reset the operation metrics.
+     *
+     * Reset all of the operation counters and latency histograms back
+     * to zero. The structure of the skip list is not affected.
+     */
+    public void ResetStats() {
+        finds = 0;
+        inserts = 0;
+        removes = 0;
+        comparisons = 0;
+        horizontalHops = 0;
+        verticalHops = 0;
+        lastComparisons = 0;
+        lastHorizontalHops = 0;
+        lastVerticalHops = 0;
+        findLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+        insertLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+        removeLatency = new long[SkipListStats.NUM_LATENCY_BUCKETS];
+        filterRejects = 0;
+        filterFalsePositives = 0;
+        agedTowers = 0;
+    }
+    
+    /**
+     * Clear the touched flags.
+     *
+     * The ClearTouchedFlag function resets all the touched flags to not
+     * touched. This allows for graphically displaying the path of the
+     * algorithms. If this is not called in between calls to diffierent
+     * algorithms then the touch flags will carry over and it will not
+     * correctly give a graphical representation of the algorithm path.
+     */
+    public void ClearTouchedFlag() {
+        SkipListNode curBaseNode, curNode;
+
+        curBaseNode = levZeroNegInfNode;
+
+        while (curBaseNode != null) {
+            curBaseNode.touched = false;
+            curBaseNode.vtouched = false;
+            curBaseNode.rtouched = false;
+        
+            curNode = curBaseNode.nodeAbove;
+        
+            while (curNode != null) {
+                curNode.touched = false;
+                curNode.vtouched = false;
+                curNode.rtouched = false;
+                
+                curNode = curNode.nodeAbove;
+            }
+        
+            curBaseNode = curBaseNode.nodeAfter;
+        }
+    }
+ 
+    /**
+     * Check if a key has expired.
+     *
+     * @param base The level zero node of the key.
+     * @return True if the key has a time to live and it has run out.
+     */
+    private boolean IsExpired(SkipListNode base) {
+        return (base.expiresAt != 0) && (base.expiresAt <= Now());
+    }
+
+    /**
+     * Set the expiry time of a key.
+     *
+     * A time to live too long to add to the current time without
+     * overflowing makes the key expire at Long.MAX_VALUE, which is
+     * further away than any JVM runs.
+     * @param node Any node of the tower of the key.
+     * @param ttlMillis The time to live in milliseconds, 0 for forever.
+     */
+    private void SetExpiry(SkipListNode node, long ttlMillis) {
+        long now;
+
+        if (ttlMillis > 0) {
+            now = Now();
+            if (ttlMillis >= ((Long.MAX_VALUE - now) / 1000000L)) {
+                GetBaseNode(node).expiresAt = Long.MAX_VALUE;
+            } else {
+                GetBaseNode(node).expiresAt = now + (ttlMillis * 1000000L);
+            }
+        }
+    }
+
+    /**
+     * Obtain the current time.
+     *
+     * @return The nanoseconds since TIME_ORIGIN, or the time of the
+     * clock set with SetClock.
+     */
+    private long Now() {
+        if (clock != null) {
+            return clock.getAsLong();
+        }
+
+        return System.nanoTime() - TIME_ORIGIN;
+    }
+
+    /**
+     * Obtain the level zero node of a tower.
+     *
+     * @param node Any node of the tower.
+     * @return The level zero node of the tower.
+     */
+    private SkipListNode GetBaseNode(SkipListNode node) {
+        while (node.nodeBelow != null) {
+            node = node.nodeBelow;
+        }
+
+        return node;
+    }
+
+    /**
+     * Obtain the later of two expiry times.
+     *
+     * @param a An expiry time, or 0 for never.
+     * @param b An expiry time, or 0 for never.
+     * @return The later of the two, where never is the latest.
+     */
+    private long LaterExpiry(long a, long b) {
+        if ((a == 0) || (b == 0)) {
+            return 0;
+        }
+
+        return Math.max(a, b);
+    }
+
+    /**
+     * Skip over expired keys.
+     *
+     * @param node A level zero node.
+     * @return The first level zero node at or after the given node
+     * which has not expired.
+     */
+    private SkipListNode NextLive(SkipListNode node) {
+        while (!IsPosInfNode(node) && IsExpired(node)) {
+            node = node.nodeAfter;
+        }
+
+        return node;
+    }
+
+    /**
+     * Check if node is negative infinity node.
+     *
+     * Determine if the passed node is a negative infinity node.
+     * @return Value signifying if the node is or is not neg inf node.
+     * @retval true The node IS a negative infinity node.
+     * @retval false The node IS NOT a negative infinity node.
+     */
+    private boolean IsNegInfNode(SkipListNode node) {
+        Integer key;
+
+        key = Integer.MIN_VALUE;
+
+        if (node.key.equals(key)) {
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Check if node is posetive infinity node.
+     *
+     * Determine if the passed node is a posetive infinity node.
+     * @return Value signifying if the node is or is not pos inf node.
+     * @retval true The node IS a posetive infinity node.
+     * @retval false The node IS NOT a posetive infinity node.
+     */
+    private boolean IsPosInfNode(SkipListNode node) {
+        Integer key;
+
+        key = Integer.MAX_VALUE;
+
+        if (node.key.equals(key)) {
+            return true;
+        } else {
+            return false;
+        }
+    }
+    
+    /**
+     * Remove a single instance of a node.
+     *
+     * The RemoveNode function only removes an instance of a node on a
+     * single level. It is designed to be used by the Remove function.
+     * This function removes a node from a level and returns the node
+     * that exists below it so that it can be removed next in the Remove
+     * function.
+     * @param node The node to remove.
+     * @return The node below the node being removed, or null if none.
+     * @retval null There exist no more nodes below this node.
+     */
+    private SkipListNode RemoveNode(SkipListNode node) {
+        SkipListNode before;
+        SkipListNode after;
+        
+        before = node.nodeBefore;
+        after = node.nodeAfter;
+        
+        before.rtouched = true;
+        after.rtouched = true;
+        
+        node.nodeAbove = null;
+        fingerGeneration = fingerGeneration + 1;
+
+        // An unlinked key is no longer promoted, which tells the aging
+        // to drop it from promotedNodes.
+        node.promotedLevels = 0;
+
+        before.nodeAfter = after;
+        after.nodeBefore = before;
+        
+        return node.nodeBelow;
+    }
+  
+    /**
+     * Add an empty level to the top.
+     *
+     * Add an empty level to the top of the skip list structure. An
+     * empty level only consists of a negative infinity node and a
+     * posetive infinity node.
+     */
+    private void AddEmptyLevelAbove() {
+        if ((levZeroNegInfNode == null) && (levZeroPosInfNode == null)) {
+            levZeroNegInfNode = new SkipListNode(Integer.MIN_VALUE);
+            levZeroPosInfNode = new SkipListNode(Integer.MAX_VALUE);
+            
+            // Using Integer.MIN_VALUE as the negative infinit and
+            // Integer.MAX_VALUE as the posetive infinit. Hence, I am
+            // reducing the set of acceptable intergers for keys by two.
+            levZeroNegInfNode.nodeAfter = levZeroPosInfNode;
+            levZeroPosInfNode.nodeBefore = levZeroNegInfNode;
+
+            topLevNegInfNode = levZeroNegInfNode;
+            topLevPosInfNode = levZeroPosInfNode;
+        } else {
+            SkipListNode newNegInfNode;
+            SkipListNode newPosInfNode;
+
+            newNegInfNode = new SkipListNode(Integer.MIN_VALUE);
+            newPosInfNode = new SkipListNode(Integer.MAX_VALUE);
+
+            newNegInfNode.nodeAfter = newPosInfNode;
+            newPosInfNode.nodeBefore = newNegInfNode;
+
+            newNegInfNode.nodeBelow = topLevNegInfNode;
+            newPosInfNode.nodeBelow = topLevPosInfNode;
+
+            topLevNegInfNode.nodeAbove = newNegInfNode;
+            topLevPosInfNode.nodeAbove = newPosInfNode;
+
+            topLevNegInfNode = newNegInfNode;
+            topLevPosInfNode = newPosInfNode;
+        }
+
+        totalHeight = totalHeight + 1;
+    }
+
+    /**
+     * Search for relative insert node.
+     *
+     * This function searches for a node to use for a relative insert.
+     * This function is NOT designed to be used to find a node with a
+     * given k. Note: This function can return a node which has the same
+     * key as the key that was searched for. This should be checked for
+     * and if it is the case an insert should NOT be performed.
+     * @param k The key value to search for (norm key of node to add).
+     * @return The largest keyed node less than or equal to key.
+     */
+    private SkipListNode InsertSearch(int k) {
+        SkipListNode[] fingerNodes;
+        SkipListNode p, q;
+        Integer key;
+        int comps, hHops, vHops, level;
+
+        key = new Integer(k);
+        
+        fingerNodes = CurrentFinger();
+        level = FingerLevel(fingerNodes, k);
+        if (level < 0) {
+            level = totalHeight - 1;
+            p = topLevNegInfNode;
+        } else {
+            p = fingerNodes[level];
+        }
         q = null;
+        comps = 0;
+        hHops = 0;
+        vHops = 0;
+
+        do {
+            p.touched = true;
+            p.vtouched = true; // this will cause the top left to be set
+                               // when it shouldn't be but it should
+                               // still work fine because the one below
+                               // it won't be touched unless there is
+                               // vertical association.
+            comps = comps + 1;
+            while (p.nodeAfter.key.intValue() <= key.intValue()) {
+                p.nodeAfter.touched = true;
+                p = p.nodeAfter;
+                hHops = hHops + 1;
+                comps = comps + 1;
+            }
+            p.nodeAfter.touched = true;
+            if (fingerNodes != null) {
+                fingerNodes[level] = p;
+            }
+            level = level - 1;
+
+            q = p;
+            p = p.nodeBelow;
+            if (p != null) {
+                vHops = vHops + 1;
+            }
+        } while (p != null);
+
+        RecordSearch(comps, hHops, vHops);
+        
+        return q;
+    }
+
+    /**
+     * Obtain the finger of the current thread.
+     *
+     * The CurrentFinger function returns the finger nodes of the thread
+     * calling it, with one entry for every level. A finger of an older
+     * generation is forgotten first, so every node it returns is still
+     * part of the skip list.
+     * @return The finger nodes, level 0 first, or null.
+     * @retval null The search finger is disabled.
+     */
+    private SkipListNode[] CurrentFinger() {
+        SkipListFinger f;
+        SkipListNode[] newNodes;
+
+        if (!fingerEnabled) {
+            return null;
+        }
+
+        f = finger.get();
+        if ((f == null) || (f.generation != fingerGeneration)) {
+            f = new SkipListFinger(totalHeight, fingerGeneration);
+            finger.set(f);
+        } else if (f.nodes.length < totalHeight) {
+            newNodes = new SkipListNode[totalHeight];
+            System.arraycopy(f.nodes, 0, newNodes, 0, f.nodes.length);
+            f.nodes = newNodes;
+        }
+
+        return f.nodes;
+    }
+
+    /**
+     * Find the level to start a search from.
+     *
+     * The FingerLevel function looks for the lowest level whose finger
+     * node is still the largest keyed node less than the given key on
+     * that level. Starting the search from that node skips all of the
+     * levels above it, so a search for a key near the last searched key
+     * only takes a few hops.
+     * @param fingerNodes The finger nodes from CurrentFinger, or null.
+     * @param k The key value that is going to be searched for.
+     * @return The level to start from, or -1 if none covers the key.
+     * @retval -1 The search has to start at the top left node.
+     */
+    private int FingerLevel(SkipListNode[] fingerNodes, int k) {
+        SkipListNode p;
+        int level;
+
+        if (fingerNodes == null) {
+            return -1;
+        }
+
+        for (level = 0; level < totalHeight; level++) {
+            p = fingerNodes[level];
+            if ((p != null) && (p.key.intValue() < k) &&
+                (k < p.nodeAfter.key.intValue())) {
+                return level;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Record an access to a key.
+     *
+     * The RecordAccess function counts an access to the key of the
+     * given tower and promotes the tower when it has been accessed
+     * often enough. Every agingInterval accesses it also ages the
+     * access counts.
+     * @param top The top node of the tower that was found.
+     * @return The top node of the tower after a possible promotion.
+     */
+    private SkipListNode RecordAccess(SkipListNode top) {
+        SkipListNode base, p;
+        int height;
+
+        base = top;
+        height = 1;
+        while (base.nodeBelow != null) {
+            base = base.nodeBelow;
+            height = height + 1;
+        }
+
+        base.accessCount = AgedAccessCount(base) + 1;
+
+        if ((height < (totalHeight - 1)) &&
+            (base.accessCount >= (promoteThreshold << base.promotedLevels))) {
+
+            // Work back along the level of the top node until a node
+            // with a node above it is found, just like Insert does when
+            // the coin lands heads. The negative infinity node always
+            // has one because the tower is below the top level.
+            p = top;
+            while (p.nodeAbove == null) {
+                p = p.nodeBefore;
+            }
+            top = InsertAfterAbove(p.nodeAbove, top, base.key.intValue());
+            if (base.promotedLevels == 0) {
+                promotedNodes.add(base);
+            }
+            base.promotedLevels = base.promotedLevels + 1;
+        }
+
+        accessesSinceAging = accessesSinceAging + 1;
+        if (accessesSinceAging >= agingInterval) {
+            accessesSinceAging = 0;
+            AgeAccessCounts();
+
+            // The aging might have demoted the tower that was just
+            // found.
+            top = base;
+            while (top.nodeAbove != null) {
+                top = top.nodeAbove;
+            }
+        }
+
+        return top;
+    }
+
+    /**
+     * Obtain the aged access count of a key.
+     *
+     * The AgedAccessCount function halves the access count of a level
+     * zero node once for every aging since it was last looked at, and
+     * marks it as aged up to the current epoch.
+     * @param base The level zero node of the key.
+     * @return The aged access count.
+     */
+    private int AgedAccessCount(SkipListNode base) {
+        int missed;
+
+        missed = agingEpoch - base.agedEpoch;
+        base.agedEpoch = agingEpoch;
+
+        if (missed >= 31) {
+            base.accessCount = 0;
+        } else if (missed > 0) {
+            base.accessCount = base.accessCount >> missed;
+        }
+
+        return base.accessCount;
+    }
+
+    /**
+     * Age the access counts.
+     *
+     * The AgeAccessCounts function starts a new aging epoch, which
+     * halves every access count the next time it is looked at, and
+     * demotes each promoted tower by one level if its halved count is
+     * below what was needed to promote it to its current height. Only
+     * promoted levels are ever removed, so the coin flipped part of a
+     * tower is left as it was. As a key loses at most one promoted
+     * level per aging and needs at least promoteThreshold accesses to
+     * gain one, the number of promoted towers visited is bounded by
+     * the accesses of the last few agings, not by the number of keys.
+     */
+    private void AgeAccessCounts() {
+        SkipListNode base, top;
+        int i, kept;
+
+        agingEpoch = agingEpoch + 1;
+
+        kept = 0;
+        for (i = 0; i < promotedNodes.size(); i++) {
+            base = promotedNodes.get(i);
+            agedTowers = agedTowers + 1;
+
+            if ((base.promotedLevels > 0) &&
+                (AgedAccessCount(base) <
+                 (promoteThreshold << (base.promotedLevels - 1)))) {
+
+                top = base;
+                while (top.nodeAbove != null) {
+                    top = top.nodeAbove;
+                }
+
+                top.nodeBefore.nodeAfter = top.nodeAfter;
+                top.nodeAfter.nodeBefore = top.nodeBefore;
+                top.nodeBelow.nodeAbove = null;
+                top.nodeBelow = null;
+                fingerGeneration = fingerGeneration + 1;
+
+                base.promotedLevels = base.promotedLevels - 1;
+            }
+
+            if (base.promotedLevels > 0) {
+                promotedNodes.set(kept, base);
+                kept = kept + 1;
+            }
+        }
+
+        promotedNodes.subList(kept, promotedNodes.size()).clear();
+    }
+
+    /**
+     * Add a key to the negative lookup filter.
+     *
+     * Add a key that was just inserted to the filter, if there is one.
+     * When the filter is too full to take the key, it is rebuilt from
+     * level zero with twice as many slots, or removed if that would not
+     * fit in the memory budget.
+     * @param k The key that was just inserted.
+     */
+    private void FilterAdd(int k) {
+        if ((filter != null) && !filter.Add(k)) {
+            BuildFilter(filter.GetCapacity() * 2,
+                filter.GetFingerprintBits());
+        }
+    }
+
+    /**
+     * Build the negative lookup filter.
+     *
+     * Build a new filter of the given size from the keys on level zero,
+     * doubling the size for as long as the keys do not fit. If the
+     * filter would take more than filterMaxBytes, or more slots than
+     * an array can hold, it is removed.
+     * @param capacity The number of keys to size the filter for.
+     * @param bits The number of bits per fingerprint.
+     * @return The true/false depending on success or failure.
+     * @retval false The filter would not fit in the memory budget.
+     */
+    private boolean BuildFilter(int capacity, int bits) {
+        SkipListNode curBaseNode;
+        long numSlots;
+        boolean fits;
+
+        do {
+            // A doubled capacity that overflowed is too large as well.
+            // Each fingerprint slot takes two bytes.
+            if (capacity <= 0) {
+                filter = null;
+                return false;
+            }
+            numSlots = SkipListFilter.NumSlotsFor(capacity);
+            if ((numSlots > SkipListFilter.MAX_SLOTS) ||
+                ((numSlots * 2) > filterMaxBytes)) {
+                filter = null;
+                return false;
+            }
+
+            filter = new SkipListFilter(capacity, bits);
+            fits = true;
+
+            curBaseNode = levZeroNegInfNode.nodeAfter;
+            while (fits && !IsPosInfNode(curBaseNode)) {
+                fits = filter.Add(curBaseNode.key.intValue());
+                curBaseNode = curBaseNode.nodeAfter;
+            }
+
+            capacity = capacity * 2;
+        } while (!fits);
+
+        return true;
+    }
+
+    /**
+     * Record the work done by a search.
+     *
+     * Add the work done by a single search to the operation metrics
+     * and remember it as the work done by the last search.
+     * @param comps The number of key comparisons made.
+     * @param hHops The number of horizontal hops made.
+     * @param vHops The number of vertical hops made.
+     */
+    private void RecordSearch(int comps, int hHops, int vHops) {
+        comparisons = comparisons + comps;
+        horizontalHops = horizontalHops + hHops;
+        verticalHops = verticalHops + vHops;
+        lastComparisons = comps;
+        lastHorizontalHops = hHops;
+        lastVerticalHops = vHops;
+    }
+
+    /**
+     * Record the latency of an operation.
+     *
+     * Add the time elapsed since the given start time to the given
+     * power of two latency histogram.
+     * @param buckets The latency histogram of the operation.
+     * @param startTime The System.nanoTime() value at operation start.
+     */
+    private void RecordLatency(long[] buckets, long startTime) {
+        long elapsed;
+        int bucket;
+
+        elapsed = System.nanoTime() - startTime;
+        bucket = 64 - Long.numberOfLeadingZeros(Math.max(elapsed, 0));
+        if (bucket >= buckets.length) {
+            bucket = buckets.length - 1;
+        }
+        buckets[bucket]++;
+    }
+
+    /**
+     * Create an empty skip list like this one.
+     *
+     * Create the empty skip list that the set operations and Split
+     * return. It uses the same engine and prints coin flips only if
+     * this skip list does. Its coin is seeded from the coin of this
+     * skip list, so a seeded skip list gives reproducible results.
+     * @return A new, empty skip list.
+     */
+    private SkipList NewEmptyList() {
+        SkipList list;
+
+        list = new SkipList(engine);
+        list.verbose = verbose;
+        list.rand.setSeed(rand.nextLong());
+
+        return list;
+    }
+
+    /**
+     * Append a key to the end.
+     *
+     * Add a key which is greater than every key in the skip list after
+     * the last node of each level. The nodes before the posetive
+     * infinity nodes are where a search for the key would leave each
+     * level, so no search is needed. This is used to build the result
+     * of the set operations.
+     * @param k The key to append.
+     * @param expiresAt The expiry time of the key, or 0 for never.
+     */
+    private void AppendKey(int k, long expiresAt) {
+        SkipListNode[] path;
+        SkipListNode p, q;
+        int level;
+
+        if (engine == DETERMINISTIC) {
+            path = new SkipListNode[totalHeight];
+            p = levZeroPosInfNode;
+            for (level = 0; level < totalHeight; level++) {
+                path[level] = p.nodeBefore;
+                p = p.nodeAbove;
+            }
+
+            InsertAfter(path[0], new SkipListNode(k)).expiresAt = expiresAt;
+            RestoreGaps(path);
+        } else {
+            p = levZeroPosInfNode;
+            q = InsertAfter(p.nodeBefore, new SkipListNode(k));
+            q.expiresAt = expiresAt;
+
+            while (rand.nextBoolean() == true) {
+                if (p.nodeAbove == null) {
+                    AddEmptyLevelAbove();
+                }
+                p = p.nodeAbove;
+                q = InsertAfterAbove(p.nodeBefore, q, k);
+            }
+        }
+    }
+
+    /**
+     * Tidy up the levels after a cut.
+     *
+     * After a Split or Join, the deterministic engine needs the gap
+     * bounds restored along the cut, and the randomized engine should
+     * not keep empty levels on top which the cut left behind.
+     * @param path The last node before the cut on each level.
+     */
+    private void TrimAfterCut(SkipListNode[] path) {
+        if (engine == DETERMINISTIC) {
+            RestoreGaps(path);
+        } else {
+            while ((totalHeight > 1) &&
+                   IsPosInfNode(topLevNegInfNode.nodeAfter)) {
+                RemoveEmptyLevelAbove();
+            }
+        }
+    }
+
+    /**
+     * Search for the path to a key.
+     *
+     * The SearchPath function is the search used by the deterministic
+     * engine and by Remove. It descends the skip list like InsertSearch does, but it
+     * remembers where it left each level.
+     * @param k The key value to search for.
+     * @return An array with one entry per level (level 0 first) holding
+     * the largest keyed node on that level whose key is less than k.
+     */
+    private SkipListNode[] SearchPath(int k) {
+        return SearchPath(k, true);
+    }
+
+    /**
+     * Search for the path to a key.
+     *
+     * The same search as SearchPath(k), except that housekeeping such
+     * as aging can leave it out of the operation metrics so that the
+     * metrics only show the work done for the callers of the skip list.
+     * @param k The key value to search for.
+     * @param counted True to add the search to the operation metrics.
+     * @return An array with one entry per level (level 0 first) holding
+     * the largest keyed node on that level whose key is less than k.
+     */
+    private SkipListNode[] SearchPath(int k, boolean counted) {
+        SkipListNode[] path;
+        SkipListNode p;
+        int level, comps, hHops, vHops;
+
+        path = new SkipListNode[totalHeight];
+
+        p = topLevNegInfNode;
+        level = totalHeight - 1;
+        comps = 0;
+        hHops = 0;
+        vHops = 0;
 
         do {
             p.touched = true;
-            p.vtouched = true; // this will cause the top left to be set
-                               // when it shouldn't be but it should
-                               // still work fine because the one below
-                               // it won't be touched unless there is
-                               // vertical association.
-            while (p.nodeAfter.key.intValue() <= key.intValue()) {
+            p.vtouched = true;
+            comps = comps + 1;
+            while (p.nodeAfter.key.intValue() < k) {
                 p.nodeAfter.touched = true;
                 p = p.nodeAfter;
-                
+                hHops = hHops + 1;
+                comps = comps + 1;
             }
             p.nodeAfter.touched = true;
 
-            q = p;
+            path[level] = p;
+            level = level - 1;
             p = p.nodeBelow;
+            if (p != null) {
+                vHops = vHops + 1;
+            }
         } while (p != null);
-        
-        return q;
+
+        if (counted) {
+            RecordSearch(comps, hHops, vHops);
+        }
+
+        return path;
+    }
+
+    /**
+     * Insert a key using the deterministic engine.
+     *
+     * Insert a new node on level zero and then restore the gap bounds
+     * from the bottom up. Each level needs at most a couple of splits,
+     * so the insert is logarithmic in the worst case.
+     * @param k The key value to use for the node to insert.
+     * @return The top node of the new tower, or null if failure.
+     * @retval null A node with the provided key already exists.
+     */
+    private SkipListNode InsertDeterministic(int k) {
+        SkipListNode[] path;
+        SkipListNode newNode;
+
+        path = SearchPath(k);
+
+        if ((path[0].nodeAfter.key.intValue() == k) &&
+            IsExpired(path[0].nodeAfter)) {
+            RemoveKey(k, false);
+            path = SearchPath(k);
+        }
+
+        if (path[0].nodeAfter.key.intValue() == k) {
+            return null;
+        }
+
+        newNode = InsertAfter(path[0], new SkipListNode(k));
+
+        RestoreGaps(path);
+
+        while (newNode.nodeAbove != null) {
+            newNode = newNode.nodeAbove;
+        }
+
+        return newNode;
+    }
+
+    /**
+     * Remove a key using the deterministic engine.
+     *
+     * Remove the whole tower of the given key and then restore the gap
+     * bounds from the bottom up.
+     * @param k The key of the nodes you would like to remove.
+     * @param counted True to add the search to the operation metrics.
+     * @return The level zero node of the removed tower, or null.
+     * @retval null Failed to find the given key in the skip list.
+     */
+    private SkipListNode RemoveDeterministic(int k, boolean counted) {
+        SkipListNode[] path;
+        SkipListNode p, base;
+
+        path = SearchPath(k, counted);
+
+        p = path[0].nodeAfter;
+        if (p.key.intValue() != k) {
+            return null;
+        }
+
+        base = p;
+        while (p.nodeAbove != null) {
+            p = p.nodeAbove;
+        }
+
+        while (p != null) {
+            p = RemoveNode(p);
+        }
+
+        RestoreGaps(path);
+
+        return base;
+    }
+
+    /**
+     * Restore the gap bounds along a search path.
+     *
+     * The deterministic engine keeps between 1 and 3 nodes on the
+     * level below between any two neighboring nodes of a level, and
+     * keeps exactly one empty level on top. An insert or remove only
+     * breaks the bounds of the gap which contains the key on each
+     * level, and that gap starts at the path node of that level. Going
+     * from the bottom up, a gap with more than 3 nodes is split by
+     * raising its third node, and an empty gap is merged with its
+     * neighbor by lowering one of the towers bounding it (which can
+     * then need a split). Raising and lowering only change the gap of
+     * the key on the level above, which is handled next.
+     * @param path The path from SearchPath, updated as towers lower.
+     */
+    private void RestoreGaps(SkipListNode[] path) {
+        SkipListNode a, b, n;
+        int level, gap, i;
+
+        level = 1;
+
+        if (!IsPosInfNode(topLevNegInfNode.nodeAfter)) {
+            AddEmptyLevelAbove();
+        }
+
+        while (level < totalHeight) {
+            a = PathNodeAt(path, level);
+            b = a.nodeAfter;
+            gap = CountGap(a);
+
+            if ((gap == 0) && !(IsNegInfNode(a) && IsPosInfNode(b))) {
+                if (!IsPosInfNode(b)) {
+                    LowerTower(b, path, level);
+                } else {
+                    LowerTower(a, path, level);
+                    a = path[level];
+                }
+                gap = CountGap(a);
+            }
+
+            while (gap > 3) {
+                n = a.nodeBelow;
+                for (i = 0; i < 3; i++) {
+                    n = n.nodeAfter;
+                }
+                a = InsertAfterAbove(a, n, n.key.intValue());
+                gap = CountGap(a);
+            }
+
+            if ((level == (totalHeight - 1)) &&
+                !IsPosInfNode(topLevNegInfNode.nodeAfter)) {
+                AddEmptyLevelAbove();
+            }
+
+            level = level + 1;
+        }
+
+        while ((totalHeight > 1) &&
+               IsPosInfNode(topLevNegInfNode.nodeBelow.nodeAfter)) {
+            RemoveEmptyLevelAbove();
+        }
+    }
+
+    /**
+     * Obtain the path node of a level.
+     *
+     * @param path The path from SearchPath.
+     * @param level The level to get the path node of.
+     * @return The path node, or the negative infinity node of the level
+     * if the level was added after the path was made.
+     */
+    private SkipListNode PathNodeAt(SkipListNode[] path, int level) {
+        SkipListNode p;
+        int i;
+
+        if (level < path.length) {
+            return path[level];
+        }
+
+        p = levZeroNegInfNode;
+        for (i = 0; i < level; i++) {
+            p = p.nodeAbove;
+        }
+
+        return p;
+    }
+
+    /**
+     * Count the nodes in a gap.
+     *
+     * @param node A node on a level above level zero.
+     * @return The number of nodes on the level below which are between
+     * the node and the node after it.
+     */
+    private int CountGap(SkipListNode node) {
+        SkipListNode p, end;
+        int gap;
+
+        p = node.nodeBelow.nodeAfter;
+        end = node.nodeAfter.nodeBelow;
+        gap = 0;
+
+        while (p != end) {
+            gap = gap + 1;
+            p = p.nodeAfter;
+        }
+
+        return gap;
+    }
+
+    /**
+     * Count the nodes of a level.
+     *
+     * @param negInf The negative infinity node of the level.
+     * @return The number of nodes between the infinity nodes.
+     */
+    private int CountLevel(SkipListNode negInf) {
+        SkipListNode p;
+        int count;
+
+        count = 0;
+        p = negInf.nodeAfter;
+        while ((p != null) && !IsPosInfNode(p)) {
+            count = count + 1;
+            p = p.nodeAfter;
+        }
+
+        return count;
+    }
+
+    /**
+     * Lower a tower.
+     *
+     * Remove the given node and every node above it from the skip list
+     * so that the tower ends on the level below the given node. Path
+     * nodes that get removed are replaced with the node before them.
+     * @param node The node of the tower to remove first.
+     * @param path The path from SearchPath.
+     * @param level The level of the given node.
+     */
+    private void LowerTower(SkipListNode node, SkipListNode[] path,
+        int level) {
+
+        SkipListNode p, above;
+
+        node.nodeBelow.nodeAbove = null;
+
+        p = node;
+        while (p != null) {
+            above = p.nodeAbove;
+            RemoveNode(p);
+            if ((level < path.length) && (path[level] == p)) {
+                path[level] = p.nodeBefore;
+            }
+            p = above;
+            level = level + 1;
+        }
     }
 
+    /**
+     * Remove the empty level from the top.
+     *
+     * Remove the top level of the skip list structure. The top level
+     * must be an empty level and must not be level zero.
+     */
+    private void RemoveEmptyLevelAbove() {
+        topLevNegInfNode = topLevNegInfNode.nodeBelow;
+        topLevPosInfNode = topLevPosInfNode.nodeBelow;
+
+        topLevNegInfNode.nodeAbove = null;
+        topLevPosInfNode.nodeAbove = null;
+
+        totalHeight = totalHeight - 1;
+        fingerGeneration = fingerGeneration + 1;
+    }
 
     /**
      * Insert node after.
@@ -0,0 +1,59 @@
+/**
+ * @file SkipListBlock.java
+ * @author Andrew De Ponte
+ * @brief SkipListBlock implementation class file.
+ *
+ * A file containing the implementation of a block of keys. The blocks
+ * make up level zero of an unrolled skip list.
+ */
+
+/**
+ * A class implementation of a skip list block.
+ *
+ * A class designed to hold a sorted run of keys in a primitive array
+ * along with references to the blocks before and after it. Keeping
+ * many keys in one array means that scanning level zero or finishing a
+ * search reads keys which are next to each other in memory instead of
+ * following a reference to a new node for every key.
+ */
+class SkipListBlock {
+    int[] keys;
+    int count;
+    SkipListBlock blockAfter;
+    SkipListBlock blockBefore;
+
+    /**
+     * Construct a skip list block.
+     *
+     * Construct an empty skip list block with room for the given number
+     * of keys.
+     * @param capacity The maximum number of keys the block can hold.
+     */
+    SkipListBlock(int capacity) {
+        keys = new int[capacity];
+        count = 0;
+        blockAfter = null;
+        blockBefore = null;
+    }
+
+    /**
+     * Obtain the rank of a key.
+     *
+     * Count the keys in the block which are less than the given key.
+     * The keys are counted without a branch per key so that the loop
+     * is cheap even when the comparisons are not predictable, and the
+     * whole block is usually a cache line or two.
+     * @param k The key to rank.
+     * @return The index the key has, or would have, in the block.
+     */
+    int Rank(int k) {
+        int i, rank;
+
+        rank = 0;
+        for (i = 0; i < count; i++) {
+            rank = rank + ((keys[i] < k) ? 1 : 0);
+        }
+
+        return rank;
+    }
+}
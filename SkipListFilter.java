@@ -0,0 +1,322 @@
+/**
+ * @file SkipListFilter.java
+ * @author Andrew De Ponte
+ * @brief SkipListFilter implementation class file.
+ *
+ * A file containing the implementation of a cuckoo filter over integer
+ * keys. The filter is kept in front of a skip list so that searches for
+ * keys which are not in the skip list can be answered without
+ * descending the skip list.
+ */
+
+/**
+ * A class implementing a cuckoo filter.
+ *
+ * A class designed to remember a small fingerprint of every key in a
+ * skip list. Each key has two candidate buckets of four fingerprints.
+ * A key whose fingerprint is in neither of its buckets is definitely
+ * not in the skip list. Unlike a Bloom filter, a cuckoo filter supports
+ * removing keys, which is needed as keys are removed from the skip
+ * list. Note: A key must only be removed if it was added, otherwise the
+ * fingerprint of another key might be removed.
+ */
+class SkipListFilter {
+    static final int BUCKET_SIZE = 4;
+    static final int MAX_KICKS = 500;
+
+    // The most fingerprint slots a filter can have. It is the largest
+    // power of two that a Java array can hold.
+    static final long MAX_SLOTS = 1L << 30;
+
+    private short[] table;
+    private int bucketMask;
+    private int fingerprintMask;
+    private int fingerprintBits;
+    private int numKeys;
+    private int kickVictim;
+
+    /**
+     * Construct a skip list filter.
+     *
+     * Construct an empty filter with room for at least the given number
+     * of keys at a load of 95 percent.
+     * @param capacity The number of keys the filter should hold, for
+     * which NumSlotsFor must be at most MAX_SLOTS.
+     * @param bits The number of bits per fingerprint, 4 to 16.
+     */
+    SkipListFilter(int capacity, int bits) {
+        table = new short[(int) NumSlotsFor(capacity)];
+        bucketMask = (table.length / BUCKET_SIZE) - 1;
+        fingerprintBits = bits;
+        fingerprintMask = (1 << bits) - 1;
+        numKeys = 0;
+        kickVictim = 0;
+    }
+
+    /**
+     * Obtain the size of a filter.
+     *
+     * The size is worked out in long arithmetic, so it can be compared
+     * against MAX_SLOTS before a filter is constructed.
+     * @param capacity The number of keys the filter should hold.
+     * @return The number of fingerprint slots a filter constructed for
+     * the given number of keys has.
+     */
+    static long NumSlotsFor(int capacity) {
+        long numBuckets;
+
+        numBuckets = 1;
+        while ((numBuckets * BUCKET_SIZE * 95L) < (capacity * 100L)) {
+            numBuckets = numBuckets * 2;
+        }
+
+        return numBuckets * BUCKET_SIZE;
+    }
+
+    /**
+     * Check if a key might be in the filter.
+     *
+     * @param k The key to check for.
+     * @return The true/false depending on if the key might be present.
+     * @retval false The key is definitely not in the filter.
+     */
+    boolean MightContain(int k) {
+        long h;
+        int fp, i1, i2;
+
+        h = Hash(k);
+        fp = Fingerprint(h);
+        i1 = (int)h & bucketMask;
+        i2 = AltBucket(i1, fp);
+
+        return BucketHas(i1, fp) || BucketHas(i2, fp);
+    }
+
+    /**
+     * Add a key to the filter.
+     *
+     * Add the fingerprint of a key to one of its buckets, kicking other
+     * fingerprints to their alternate buckets when both are full.
+     * @param k The key to add.
+     * @return The true/false depending on success or failure.
+     * @retval false The filter is too full. A fingerprint was lost, so
+     * the filter must not be used anymore.
+     */
+    boolean Add(int k) {
+        long h;
+        int fp, i, n, slot;
+        short tmp;
+
+        h = Hash(k);
+        fp = Fingerprint(h);
+        i = (int)h & bucketMask;
+
+        if (BucketPut(i, fp) || BucketPut(AltBucket(i, fp), fp)) {
+            numKeys = numKeys + 1;
+            return true;
+        }
+
+        for (n = 0; n < MAX_KICKS; n++) {
+            // Swap the fingerprint with one in the bucket and move the
+            // kicked out fingerprint to its alternate bucket.
+            kickVictim = (kickVictim + 1) % BUCKET_SIZE;
+            slot = (i * BUCKET_SIZE) + kickVictim;
+            tmp = table[slot];
+            table[slot] = (short)fp;
+            fp = tmp & 0xffff;
+
+            i = AltBucket(i, fp);
+            if (BucketPut(i, fp)) {
+                numKeys = numKeys + 1;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove a key from the filter.
+     *
+     * @param k The key to remove, which must have been added.
+     * @return The true/false depending on success or failure.
+     * @retval false No fingerprint of the key was found.
+     */
+    boolean Remove(int k) {
+        long h;
+        int fp, i1, i2;
+
+        h = Hash(k);
+        fp = Fingerprint(h);
+        i1 = (int)h & bucketMask;
+        i2 = AltBucket(i1, fp);
+
+        if (BucketRemove(i1, fp) || BucketRemove(i2, fp)) {
+            numKeys = numKeys - 1;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Obtain the memory used by the filter.
+     *
+     * @return The size of the fingerprint table in bytes.
+     */
+    long GetMemoryBytes() {
+        return table.length * 2L;
+    }
+
+    /**
+     * Obtain the number of slots of the filter.
+     *
+     * @return The number of fingerprint slots in the filter.
+     */
+    int GetNumSlots() {
+        return table.length;
+    }
+
+    /**
+     * Obtain the capacity of the filter.
+     *
+     * @return The number of keys the filter holds at a load of 95
+     * percent, in the unit the constructor takes.
+     */
+    int GetCapacity() {
+        return (int)((table.length * 95L) / 100);
+    }
+
+    /**
+     * Obtain the number of bits per fingerprint.
+     *
+     * @return The number of bits per fingerprint.
+     */
+    int GetFingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * Obtain the expected false positive rate.
+     *
+     * A key which is not in the filter is checked against the eight
+     * fingerprints of its two buckets, each of which matches with a
+     * probability of one over the number of nonzero fingerprints.
+     * @return The expected false positive rate at the current load.
+     */
+    double GetFalsePositiveRate() {
+        double load;
+
+        load = (double)numKeys / (double)table.length;
+
+        return (2.0 * BUCKET_SIZE * load) / (double)fingerprintMask;
+    }
+
+    /**
+     * Hash a key.
+     *
+     * @param k The key to hash.
+     * @return A well mixed 64 bit hash of the key.
+     */
+    private long Hash(int k) {
+        long h;
+
+        // The finalizer of the 64 bit MurmurHash3.
+        h = k;
+        h = h ^ (h >>> 33);
+        h = h * 0xff51afd7ed558ccdL;
+        h = h ^ (h >>> 33);
+        h = h * 0xc4ceb9fe1a85ec53L;
+        h = h ^ (h >>> 33);
+
+        return h;
+    }
+
+    /**
+     * Obtain the fingerprint of a hash.
+     *
+     * @param h The hash of a key.
+     * @return A nonzero fingerprint, as zero marks an empty slot.
+     */
+    private int Fingerprint(long h) {
+        int fp;
+
+        fp = (int)(h >>> 32) & fingerprintMask;
+        if (fp == 0) {
+            fp = 1;
+        }
+
+        return fp;
+    }
+
+    /**
+     * Obtain the alternate bucket.
+     *
+     * @param i One of the buckets of a fingerprint.
+     * @param fp The fingerprint.
+     * @return The other bucket of the fingerprint.
+     */
+    private int AltBucket(int i, int fp) {
+        return (i ^ (fp * 0x5bd1e995)) & bucketMask;
+    }
+
+    /**
+     * Check if a bucket holds a fingerprint.
+     *
+     * @param i The bucket to check.
+     * @param fp The fingerprint to look for.
+     * @return True if one of the bucket slots holds the fingerprint.
+     */
+    private boolean BucketHas(int i, int fp) {
+        int base;
+
+        base = i * BUCKET_SIZE;
+
+        return ((table[base] & 0xffff) == fp) ||
+               ((table[base + 1] & 0xffff) == fp) ||
+               ((table[base + 2] & 0xffff) == fp) ||
+               ((table[base + 3] & 0xffff) == fp);
+    }
+
+    /**
+     * Put a fingerprint in a bucket.
+     *
+     * @param i The bucket to put the fingerprint in.
+     * @param fp The fingerprint to put.
+     * @return True if there was an empty slot for the fingerprint.
+     */
+    private boolean BucketPut(int i, int fp) {
+        int base, j;
+
+        base = i * BUCKET_SIZE;
+        for (j = 0; j < BUCKET_SIZE; j++) {
+            if (table[base + j] == 0) {
+                table[base + j] = (short)fp;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove a fingerprint from a bucket.
+     *
+     * @param i The bucket to remove the fingerprint from.
+     * @param fp The fingerprint to remove.
+     * @return True if one of the bucket slots held the fingerprint.
+     */
+    private boolean BucketRemove(int i, int fp) {
+        int base, j;
+
+        base = i * BUCKET_SIZE;
+        for (j = 0; j < BUCKET_SIZE; j++) {
+            if ((table[base + j] & 0xffff) == fp) {
+                table[base + j] = 0;
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
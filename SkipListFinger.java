@@ -0,0 +1,34 @@
+/**
+ * @file SkipListFinger.java
+ * @author Andrew De Ponte
+ * @brief SkipListFinger implementation class file.
+ *
+ * A file containing the implementation of a search finger. A search
+ * finger holds the nodes that the last search of one thread left each
+ * level of a skip list from.
+ */
+
+/**
+ * A class implementation of a skip list search finger.
+ *
+ * A class designed to hold the finger of one thread. The generation is
+ * the generation of the skip list when the nodes were remembered. The
+ * skip list moves its generation on whenever a node might have been
+ * unlinked, so a finger of an older generation has to be forgotten.
+ */
+class SkipListFinger {
+    SkipListNode[] nodes;
+    int generation;
+
+    /**
+     * Construct a skip list search finger.
+     *
+     * Construct a finger which remembers no nodes yet.
+     * @param height The number of levels to remember nodes for.
+     * @param gen The generation of the skip list.
+     */
+    SkipListFinger(int height, int gen) {
+        nodes = new SkipListNode[height];
+        generation = gen;
+    }
+}
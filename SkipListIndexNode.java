@@ -0,0 +1,35 @@
+/**
+ * @file SkipListIndexNode.java
+ * @author Andrew De Ponte
+ * @brief SkipListIndexNode implementation class file.
+ *
+ * A file containing the implementation of an index node. The index
+ * nodes make up the levels above level zero of an unrolled skip list.
+ */
+
+/**
+ * A class implementation of a skip list index node.
+ *
+ * A class designed to index a block of an unrolled skip list. The key
+ * of an index node is the smallest key of its block, which is read
+ * from the block so that it never has to be updated when the block
+ * changes.
+ */
+class SkipListIndexNode {
+    SkipListBlock block;
+    SkipListIndexNode nodeAfter;
+    SkipListIndexNode nodeBelow;
+
+    /**
+     * Construct a skip list index node.
+     *
+     * Construct an index node for the given block.
+     * @param b The block to index.
+     * @param below The index node below this one, or null.
+     */
+    SkipListIndexNode(SkipListBlock b, SkipListIndexNode below) {
+        block = b;
+        nodeAfter = null;
+        nodeBelow = below;
+    }
+}
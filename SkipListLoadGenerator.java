@@ -0,0 +1,226 @@
+/**
+ * @file SkipListLoadGenerator.java
+ * @author Andrew De Ponte
+ * @brief SkipListLoadGenerator implementation class file.
+ *
+ * A file containing a load generator for the skip list server. It
+ * opens a number of connections to a server and sends pipelined
+ * batches of random requests over each of them.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.Random;
+
+/**
+ * A class to implement a skip list load generator.
+ *
+ * A class designed to measure the throughput of a SkipListServer. Each
+ * connection runs on its own thread and repeatedly writes a batch of
+ * requests before reading the batch of responses, so that the server
+ * sees pipelined requests. The requests are half finds, a fifth inserts,
+ * a fifth removes and the rest small ranges, over uniformly random keys.
+ */
+public class SkipListLoadGenerator {
+    private String host;
+    private int port;
+    private int numConnections;
+    private int numRequests;
+    private int pipelineDepth;
+    private int keyRange;
+    private long seed;
+    private long numErrors;
+
+    /**
+     * Construct a load generator.
+     *
+     * @param hostName The host the server is running on.
+     * @param portNum The port the server is listening on.
+     * @param connections The number of connections to open.
+     * @param requests The number of requests to send per connection.
+     * @param depth The number of requests per pipelined batch.
+     * @param range Keys are picked from 0 up to but excluding range.
+     * @param randSeed The seed of the first connection's requests.
+     */
+    public SkipListLoadGenerator(String hostName, int portNum,
+        int connections, int requests, int depth, int range,
+        long randSeed) {
+
+        host = hostName;
+        port = portNum;
+        numConnections = connections;
+        numRequests = requests;
+        pipelineDepth = Math.max(depth, 1);
+        keyRange = Math.max(range, 1);
+        seed = randSeed;
+        numErrors = 0;
+    }
+
+    /**
+     * Run the load.
+     *
+     * Run every connection to completion.
+     * @return The number of requests per second over all connections.
+     */
+    public double Run() throws InterruptedException {
+        Thread[] threads;
+        long startTime, elapsed;
+        int i;
+
+        threads = new Thread[numConnections];
+
+        startTime = System.nanoTime();
+
+        for (i = 0; i < numConnections; i++) {
+            final long connSeed = seed + i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    RunConnection(connSeed);
+                }
+            }, "SkipListLoadGenerator-" + i);
+            threads[i].start();
+        }
+
+        for (i = 0; i < numConnections; i++) {
+            threads[i].join();
+        }
+
+        elapsed = System.nanoTime() - startTime;
+
+        return ((double)numConnections * numRequests * 1e9) / elapsed;
+    }
+
+    /**
+     * Obtain the number of errors.
+     *
+     * @return Requests answered with ERR plus failed connections.
+     */
+    public synchronized long GetNumErrors() {
+        return numErrors;
+    }
+
+    /**
+     * Run a single connection.
+     *
+     * @param connSeed The seed for the requests of this connection.
+     */
+    private void RunConnection(long connSeed) {
+        Socket socket;
+        BufferedReader in;
+        BufferedWriter out;
+        Random rand;
+        String response;
+        int sent, batch, i, op, k, errors;
+
+        rand = new Random(connSeed);
+        errors = 0;
+        socket = null;
+
+        try {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), "US-ASCII"));
+            out = new BufferedWriter(new OutputStreamWriter(
+                socket.getOutputStream(), "US-ASCII"));
+
+            sent = 0;
+            while (sent < numRequests) {
+                batch = Math.min(pipelineDepth, numRequests - sent);
+
+                for (i = 0; i < batch; i++) {
+                    op = rand.nextInt(10);
+                    k = rand.nextInt(keyRange);
+                    if (op < 5) {
+                        out.write("FIND " + k + "\n");
+                    } else if (op < 7) {
+                        out.write("INSERT " + k + "\n");
+                    } else if (op < 9) {
+                        out.write("REMOVE " + k + "\n");
+                    } else {
+                        out.write("RANGE " + k + " " + (k + 16) + "\n");
+                    }
+                }
+                out.flush();
+
+                for (i = 0; i < batch; i++) {
+                    response = in.readLine();
+                    if (response == null) {
+                        throw new IOException("connection closed early");
+                    }
+                    if (response.startsWith("ERR")) {
+                        errors = errors + 1;
+                    }
+                }
+
+                sent = sent + batch;
+            }
+
+            out.write("QUIT\n");
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("SkipListLoadGenerator: " + e.getMessage());
+            errors = errors + 1;
+        } finally {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // Nothing else can be done about a failed close.
+            }
+        }
+
+        synchronized (this) {
+            numErrors = numErrors + errors;
+        }
+    }
+
+    /**
+     * Run the load generator.
+     *
+     * Usage: java SkipListLoadGenerator [port] [connections] [requests]
+     * [depth] [range]. The port 0 starts a server in this process on
+     * a free port, so the whole thing can be tried with one command.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        SkipListLoadGenerator load;
+        SkipListServer server;
+        SkipList list;
+        int portNum, connections, requests, depth, range;
+        double rate;
+
+        portNum = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+        connections = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        requests = (args.length > 2) ? Integer.parseInt(args[2]) : 100000;
+        depth = (args.length > 3) ? Integer.parseInt(args[3]) : 32;
+        range = (args.length > 4) ? Integer.parseInt(args[4]) : 100000;
+
+        server = null;
+        if (portNum == 0) {
+            list = new SkipList();
+            list.SetVerbose(false);
+            server = new SkipListServer(list, 0);
+            server.Start();
+            portNum = server.GetPort();
+        }
+
+        load = new SkipListLoadGenerator("localhost", portNum, connections,
+            requests, depth, range, 1);
+        rate = load.Run();
+
+        System.out.println(connections + " connections, " + requests +
+            " requests each, pipeline depth " + depth + ": " +
+            Math.round(rate) + " requests/s, " + load.GetNumErrors() +
+            " errors");
+
+        if (server != null) {
+            server.Stop();
+        }
+    }
+}
@@ -41,6 +41,21 @@ class SkipListNode {
     boolean vtouched; // if it was touched by vertical traversal
     boolean rtouched; // if node connection was broken
 
+    // These variables are only used on level zero nodes by the
+    // adaptive mode of the skip list. The accessCount is the aged
+    // number of times the key has been found, as of the aging epoch
+    // agedEpoch, and the promotedLevels is the number of levels that
+    // were added to the top of the tower because of those accesses
+    // (on top of the coin flipped levels).
+    int accessCount;
+    int agedEpoch;
+    int promotedLevels;
+
+    // This is the time at which the key expires, in nanoseconds since
+    // the TIME_ORIGIN of the skip list, or 0 if it never does. It is
+    // only set on level zero nodes.
+    long expiresAt;
+
     /**
      * Construct skip list node.
      *
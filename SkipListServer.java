@@ -0,0 +1,441 @@
+/**
+ * @file SkipListServer.java
+ * @author Andrew De Ponte
+ * @brief SkipListServer implementation class file.
+ *
+ * A file containing a small TCP server which exposes a skip list over a
+ * line based protocol. It is meant to be run on localhost so that a
+ * skip list can be used and load tested from other programs.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A class to implement a skip list server.
+ *
+ * A class designed to serve a single skip list to many connections.
+ * Each request is one line and gets exactly one line in response:
+ *
+ *   FIND k          1 if k is in the skip list, 0 if not
+ *   INSERT k        1 if k was inserted, 0 if it already existed
+ *   INSERT k ttl    the same, but k expires after ttl milliseconds
+ *   REMOVE k        1 if k was removed, 0 if it did not exist
+ *   RANGE lo hi     the number of keys in [lo, hi] followed by the keys
+ *   STATS           the skip list stats on one line, at most
+ *                   STATS_INTERVAL milliseconds old
+ *   QUIT            closes the connection
+ *
+ * A malformed request gets a line starting with ERR. Clients may send
+ * many requests without waiting for the responses. The responses are
+ * buffered and only flushed once every request that has already arrived
+ * has been answered, so a pipelined batch of requests is answered with
+ * a batch of responses. Each connection is handled by its own virtual
+ * thread when the JVM has them, and by a pooled thread otherwise. The
+ * skip list is locked for the duration of each request with a
+ * ReentrantLock rather than a synchronized block, as a virtual thread
+ * waiting for a monitor pins the platform thread carrying it. Taking
+ * the stats walks the whole skip list while holding the lock, so the
+ * STATS response is cached rather than taken for every request. A
+ * background reaper removes a slice of expired keys every
+ * REAP_INTERVAL milliseconds, so keys inserted with a time to live go
+ * away even if nobody looks for them again.
+ */
+public class SkipListServer {
+    public static final int DEFAULT_PORT = 7070;
+    public static final int REAP_INTERVAL = 100;
+    public static final int REAP_SLICE = 256;
+    public static final int STATS_INTERVAL = 1000;
+
+    private SkipList skipList;
+    private ReentrantLock lock;
+    private String cachedStats;
+    private long statsTime;
+    private int port;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private ScheduledExecutorService reaper;
+
+    /**
+     * Construct a skip list server.
+     *
+     * Construct a server for the given skip list. The server does not
+     * listen until Start is called.
+     * @param list The skip list to serve.
+     * @param portNum The port to listen on, 0 for any free port.
+     */
+    public SkipListServer(SkipList list, int portNum) {
+        this(list, portNum, new ReentrantLock());
+    }
+
+    /**
+     * Construct a skip list server sharing a lock.
+     *
+     * Construct a server for a skip list which is also used outside of
+     * the server. Everybody using the skip list while the server runs
+     * must hold the given lock while doing so.
+     * @param list The skip list to serve.
+     * @param portNum The port to listen on, 0 for any free port.
+     * @param listLock The lock guarding the skip list.
+     */
+    public SkipListServer(SkipList list, int portNum,
+        ReentrantLock listLock) {
+
+        skipList = list;
+        lock = listLock;
+        cachedStats = null;
+        statsTime = 0;
+        port = portNum;
+        serverSocket = null;
+        executor = null;
+        reaper = null;
+    }
+
+    /**
+     * Start the server.
+     *
+     * Start listening on the loopback address and accepting
+     * connections on a background thread.
+     * @throws IOException The port could not be listened on.
+     */
+    public void Start() throws IOException {
+        Thread acceptThread;
+
+        serverSocket = new ServerSocket(port, 50,
+            InetAddress.getLoopbackAddress());
+        executor = NewConnectionExecutor();
+
+        acceptThread = new Thread(new Runnable() {
+            public void run() {
+                AcceptConnections();
+            }
+        }, "SkipListServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        reaper = Executors.newSingleThreadScheduledExecutor();
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                lock.lock();
+                try {
+                    skipList.ReapExpired(REAP_SLICE);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }, REAP_INTERVAL, REAP_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the server.
+     *
+     * Stop accepting connections. Connections which are open are left
+     * to finish on their own.
+     */
+    public void Stop() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // Nothing else can be done about a failed close.
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        if (reaper != null) {
+            reaper.shutdown();
+        }
+    }
+
+    /**
+     * Obtain the port.
+     *
+     * @return The port the server is listening on.
+     */
+    public int GetPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Obtain the lock.
+     *
+     * @return The lock guarding the skip list.
+     */
+    public ReentrantLock GetLock() {
+        return lock;
+    }
+
+    /**
+     * Process a single request.
+     *
+     * Parse one request line, perform it on the skip list while holding
+     * the skip list lock and create the response line.
+     * @param line The request line without the line terminator.
+     * @return The response line without the line terminator, or null.
+     * @retval null The request was QUIT.
+     */
+    public String ProcessRequest(String line) {
+        String[] words;
+        String command, response;
+        int[] keys;
+        int k, hi, i;
+        long ttl;
+        StringBuffer buf;
+
+        words = line.trim().split("\\s+");
+        command = words[0].toUpperCase();
+
+        if (command.equals("QUIT")) {
+            return null;
+        }
+
+        if (command.equals("STATS")) {
+            return GetStatsLine();
+        }
+
+        try {
+            if (command.equals("RANGE") && (words.length == 3)) {
+                k = ParseKey(words[1]);
+                hi = ParseKey(words[2]);
+                lock.lock();
+                try {
+                    keys = skipList.Range(k, hi);
+                } finally {
+                    lock.unlock();
+                }
+                buf = new StringBuffer();
+                buf.append(keys.length);
+                for (i = 0; i < keys.length; i++) {
+                    buf.append(' ');
+                    buf.append(keys[i]);
+                }
+                return buf.toString();
+            }
+
+            if (command.equals("INSERT") && (words.length == 3)) {
+                k = ParseKey(words[1]);
+                ttl = Long.parseLong(words[2]);
+                if (ttl < 0) {
+                    return "ERR negative ttl";
+                }
+                lock.lock();
+                try {
+                    return (skipList.Insert(k, ttl) != null) ? "1" : "0";
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            if (words.length != 2) {
+                return "ERR unknown request";
+            }
+
+            k = ParseKey(words[1]);
+
+            response = "ERR unknown request";
+
+            lock.lock();
+            try {
+                if (command.equals("FIND")) {
+                    response = (skipList.Find(k) != null) ? "1" : "0";
+                } else if (command.equals("INSERT")) {
+                    response = (skipList.Insert(k) != null) ? "1" : "0";
+                } else if (command.equals("REMOVE")) {
+                    response = skipList.Remove(k) ? "1" : "0";
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return response;
+        } catch (NumberFormatException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * Obtain the stats line.
+     *
+     * Taking the stats walks the whole skip list, so the stats line is
+     * only taken again once it is STATS_INTERVAL milliseconds old.
+     * @return The skip list stats on one line.
+     */
+    private String GetStatsLine() {
+        long now;
+
+        lock.lock();
+        try {
+            now = System.nanoTime();
+            if ((cachedStats == null) ||
+                ((now - statsTime) >= (STATS_INTERVAL * 1000000L))) {
+                cachedStats = skipList.GetStats().toString();
+                statsTime = now;
+            }
+            return cachedStats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accept connections.
+     *
+     * Accept connections until the server socket is closed, handing
+     * each one to the connection executor.
+     */
+    private void AcceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        HandleConnection(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("SkipListServer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a connection.
+     *
+     * Read request lines and write response lines until the client
+     * closes the connection or sends QUIT. The responses are flushed
+     * whenever no more requests are waiting to be read.
+     * @param socket The connected socket.
+     */
+    private void HandleConnection(Socket socket) {
+        BufferedReader in;
+        BufferedWriter out;
+        String line, response;
+
+        try {
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), "US-ASCII"));
+            out = new BufferedWriter(new OutputStreamWriter(
+                socket.getOutputStream(), "US-ASCII"));
+
+            while ((line = in.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+
+                response = ProcessRequest(line);
+                if (response == null) {
+                    break;
+                }
+
+                out.write(response);
+                out.write('\n');
+
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            // The client went away, there is nobody left to answer.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing else can be done about a failed close.
+            }
+        }
+    }
+
+    /**
+     * Parse a key.
+     *
+     * @param word The word holding the key.
+     * @return The key.
+     * @throws NumberFormatException The word is not a usable key. The
+     * smallest and largest int are used by the infinity nodes.
+     */
+    private int ParseKey(String word) {
+        int k;
+
+        k = Integer.parseInt(word);
+        if ((k == Integer.MIN_VALUE) || (k == Integer.MAX_VALUE)) {
+            throw new NumberFormatException("key out of range: " + word);
+        }
+
+        return k;
+    }
+
+    /**
+     * Create the connection executor.
+     *
+     * Create an executor which runs every connection on a new virtual
+     * thread. Virtual threads are looked up by reflection so that the
+     * server still builds and runs on JVMs without them, in which case
+     * a pool of platform threads is used instead.
+     * @return The executor to run the connections on.
+     */
+    private static ExecutorService NewConnectionExecutor() {
+        Method m;
+
+        try {
+            m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)m.invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Run a skip list server.
+     *
+     * Run a server for a new, empty skip list until the process is
+     * killed. Usage: java SkipListServer [port] [deterministic]
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        SkipList list;
+        SkipListServer server;
+        int portNum;
+
+        portNum = DEFAULT_PORT;
+        if (args.length > 0) {
+            portNum = Integer.parseInt(args[0]);
+        }
+
+        if ((args.length > 1) && args[1].equals("deterministic")) {
+            list = new SkipList(SkipList.DETERMINISTIC);
+        } else {
+            list = new SkipList();
+        }
+        list.SetVerbose(false);
+
+        server = new SkipListServer(list, portNum);
+        server.Start();
+
+        System.out.println("SkipListServer listening on localhost:" +
+            server.GetPort());
+
+        while (true) {
+            Thread.sleep(60000);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * @file SkipListStats.java
+ * @author Andrew De Ponte
+ * @brief SkipListStats implementation class file.
+ *
+ * A file containing the implementation of a snapshot of the operation
+ * metrics gathered by a skip list. The snapshot is used to look at how
+ * well balanced the skip list is and how much work the algorithms are
+ * doing.
+ */
+
+/**
+ * A class implementing a skip list statistics snapshot.
+ *
+ * A class designed to hold a copy of the counters kept by a SkipList
+ * at the time the snapshot was taken. The counters are copied so that
+ * the snapshot does not change as more operations are performed on the
+ * skip list.
+ */
+public class SkipListStats {
+    // Number of latency buckets. Bucket i counts the operations which
+    // took less than 2^i nanoseconds (and at least 2^(i-1)).
+    static final int NUM_LATENCY_BUCKETS = 40;
+
+    long finds, inserts, removes;
+    long comparisons, horizontalHops, verticalHops;
+    long agedTowers;
+    int lastComparisons, lastHorizontalHops, lastVerticalHops;
+    int numKeys, numLevels, numEmptyLevels;
+    int[] heightHistogram;
+    long[] findLatency, insertLatency, removeLatency;
+    long filterRejects, filterFalsePositives, filterMemoryBytes;
+    double filterFalsePositiveRate;
+
+    /**
+     * Construct skip list stats.
+     *
+     * Construct an empty skip list stats snapshot. The SkipList fills
+     * in the fields when it takes the snapshot.
+     */
+    SkipListStats() {
+        heightHistogram = new int[0];
+        findLatency = new long[NUM_LATENCY_BUCKETS];
+        insertLatency = new long[NUM_LATENCY_BUCKETS];
+        removeLatency = new long[NUM_LATENCY_BUCKETS];
+    }
+
+    /**
+     * Obtain the number of finds.
+     *
+     * @return The number of Find calls. The searches made by Remove are
+     * not counted here, only in the comparisons and hops.
+     */
+    public long GetNumFinds() {
+        return finds;
+    }
+
+    /**
+     * Obtain the number of inserts.
+     *
+     * @return The number of Insert calls.
+     */
+    public long GetNumInserts() {
+        return inserts;
+    }
+
+    /**
+     * Obtain the number of removes.
+     *
+     * @return The number of Remove calls.
+     */
+    public long GetNumRemoves() {
+        return removes;
+    }
+
+    /**
+     * Obtain the total number of key comparisons.
+     *
+     * @return Key comparisons made by all searches so far.
+     */
+    public long GetComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Obtain the total number of horizontal hops.
+     *
+     * @return Moves to a nodeAfter made by all searches so far.
+     */
+    public long GetHorizontalHops() {
+        return horizontalHops;
+    }
+
+    /**
+     * Obtain the total number of vertical hops.
+     *
+     * @return Moves to a nodeBelow made by all searches so far.
+     */
+    public long GetVerticalHops() {
+        return verticalHops;
+    }
+
+    /**
+     * Obtain the number of aged towers.
+     *
+     * In adaptive mode every aging visits the promoted towers to see
+     * if they should be demoted. This work is not part of any search,
+     * so it is counted here rather than in the hops.
+     * @return Promoted towers visited by the agings so far.
+     */
+    public long GetAgedTowers() {
+        return agedTowers;
+    }
+
+    /**
+     * Obtain the comparisons of the last search.
+     *
+     * @return Key comparisons made by the most recent search.
+     */
+    public int GetLastComparisons() {
+        return lastComparisons;
+    }
+
+    /**
+     * Obtain the horizontal hops of the last search.
+     *
+     * @return Horizontal hops made by the most recent search.
+     */
+    public int GetLastHorizontalHops() {
+        return lastHorizontalHops;
+    }
+
+    /**
+     * Obtain the vertical hops of the last search.
+     *
+     * @return Vertical hops made by the most recent search.
+     */
+    public int GetLastVerticalHops() {
+        return lastVerticalHops;
+    }
+
+    /**
+     * Obtain the number of keys.
+     *
+     * @return Number of keys stored on level zero.
+     */
+    public int GetNumKeys() {
+        return numKeys;
+    }
+
+    /**
+     * Obtain the number of levels.
+     *
+     * @return Number of levels, level 0 counts as one of the levels.
+     */
+    public int GetNumLevels() {
+        return numLevels;
+    }
+
+    /**
+     * Obtain the number of empty levels.
+     *
+     * An empty level is a level which only consists of a negative
+     * infinity node and a posetive infinity node. A healthy skip list
+     * has at most one of them.
+     * @return Number of empty levels.
+     */
+    public int GetNumEmptyLevels() {
+        return numEmptyLevels;
+    }
+
+    /**
+     * Obtain the tower height histogram.
+     *
+     * Entry h of the returned array is the number of keys whose tower
+     * is exactly h nodes tall. Entry 0 is always zero. With a fair coin
+     * each entry should be roughly half of the entry before it.
+     * @return A copy of the tower height histogram.
+     */
+    public int[] GetHeightHistogram() {
+        return heightHistogram.clone();
+    }
+
+    /**
+     * Obtain the find latency histogram.
+     *
+     * @return A copy of the power of two nanosecond Find buckets.
+     */
+    public long[] GetFindLatency() {
+        return findLatency.clone();
+    }
+
+    /**
+     * Obtain the insert latency histogram.
+     *
+     * @return A copy of the power of two nanosecond Insert buckets.
+     */
+    public long[] GetInsertLatency() {
+        return insertLatency.clone();
+    }
+
+    /**
+     * Obtain the remove latency histogram.
+     *
+     * @return A copy of the power of two nanosecond Remove buckets.
+     */
+    public long[] GetRemoveLatency() {
+        return removeLatency.clone();
+    }
+
+    /**
+     * Obtain the number of filter rejects.
+     *
+     * @return Finds answered as absent by the negative lookup filter.
+     */
+    public long GetFilterRejects() {
+        return filterRejects;
+    }
+
+    /**
+     * Obtain the number of filter false positives.
+     *
+     * @return Finds let through by the filter that found nothing.
+     */
+    public long GetFilterFalsePositives() {
+        return filterFalsePositives;
+    }
+
+    /**
+     * Obtain the memory used by the filter.
+     *
+     * @return The filter size in bytes, or 0 if there is no filter.
+     */
+    public long GetFilterMemoryBytes() {
+        return filterMemoryBytes;
+    }
+
+    /**
+     * Obtain the expected filter false positive rate.
+     *
+     * @return The expected false positive rate at the current load, or
+     * 0 if there is no filter.
+     */
+    public double GetFilterFalsePositiveRate() {
+        return filterFalsePositiveRate;
+    }
+
+    /**
+     * Convert the stats to a string.
+     *
+     * @return A one line summary of the stats.
+     */
+    public String toString() {
+        StringBuffer buf;
+        int h;
+
+        buf = new StringBuffer();
+        buf.append("keys=" + numKeys);
+        buf.append(" levels=" + numLevels);
+        buf.append(" emptyLevels=" + numEmptyLevels);
+        buf.append(" finds=" + finds);
+        buf.append(" inserts=" + inserts);
+        buf.append(" removes=" + removes);
+        buf.append(" comparisons=" + comparisons);
+        buf.append(" hhops=" + horizontalHops);
+        buf.append(" vhops=" + verticalHops);
+        if (agedTowers > 0) {
+            buf.append(" agedTowers=" + agedTowers);
+        }
+        buf.append(" heights=[");
+        for (h = 1; h < heightHistogram.length; h++) {
+            if (h > 1) {
+                buf.append(",");
+            }
+            buf.append(heightHistogram[h]);
+        }
+        buf.append("]");
+        if (filterMemoryBytes > 0) {
+            buf.append(" filterBytes=" + filterMemoryBytes);
+            buf.append(" filterRejects=" + filterRejects);
+            buf.append(" filterFalsePositives=" + filterFalsePositives);
+        }
+
+        return buf.toString();
+    }
+}
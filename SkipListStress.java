@@ -0,0 +1,1363 @@
+/**
+ * @file SkipListStress.java
+ * @author Andrew De Ponte
+ * @brief SkipListStress implementation class file.
+ *
+ * A file containing a randomized stress harness for the skip lists. It
+ * drives the skip lists with seeded random operations, checks their
+ * results against a simple model or for linearizability, and checks
+ * the structure of the skip lists as it goes.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A class to implement a skip list stress harness.
+ *
+ * A class designed to find silent corruption in the skip lists. Every
+ * configuration of SkipList (both engines, with and without the
+ * adaptive mode, search finger and negative lookup filter) and the
+ * UnrolledSkipList are run in these modes:
+ *
+ *   batched     a number of clients whose operations are interleaved
+ *               by a seeded scheduler on one thread, with every result
+ *               compared to a TreeSet. This mode is fully reproducible
+ *               from the seed, including the coin flips of the skip
+ *               lists. It also exercises Range, Split and Join, the set
+ *               operations against a second skip list, and checks the
+ *               operation metrics at the end.
+ *   ttl         keys with a time to live on a skip list whose clock is
+ *               moved by hand, compared to a map of expiry times.
+ *   concurrent  the same number of real threads sharing one skip list
+ *               under a lock, the way the server uses it.
+ *   server      the same number of connections to a SkipListServer,
+ *               each sending pipelined batches of requests.
+ *
+ * The unrolled skip list only runs in the batched mode, as it has no
+ * time to live and is not wired into the server.
+ *
+ * In the concurrent and server modes the invocation and response of
+ * every operation are stamped with a shared logical clock, and the
+ * recorded history is checked for linearizability one key at a time
+ * (each operation touches a single key, so the history of the whole
+ * set is linearizable exactly when the history of every key is). The
+ * structure is checked with SkipList.CheckInvariants after each run and
+ * regularly during the batched mode. A failing run prints the seed and
+ * the command line which replays it.
+ */
+public class SkipListStress {
+    static final int OP_FIND = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_REMOVE = 2;
+    static final int OP_RANGE = 3;
+
+    static final String[] CONFIG_NAMES = {
+        "randomized",
+        "deterministic",
+        "randomized+adaptive+finger+filter",
+        "deterministic+finger+filter",
+        "unrolled"
+    };
+
+    private long seed;
+    private int numClients;
+    private int numOps;
+    private int keyRange;
+
+    // These hold the recorded history of the concurrent and server
+    // modes, one array of each per client. The invoke and respond
+    // times are taken from the shared logical clock.
+    private int[][] histOp, histKey, histResult;
+    private long[][] histInvoke, histRespond;
+    private AtomicLong clock;
+
+    // This guards the skip list shared by the concurrent and server
+    // modes. In the server mode it is the lock of the server.
+    private ReentrantLock listLock;
+
+    /**
+     * Construct a stress harness.
+     *
+     * @param randSeed The seed all randomness is derived from.
+     * @param clients The number of clients (threads or connections).
+     * @param ops The number of operations per client.
+     * @param range Keys are picked from 1 up to and including range.
+     */
+    public SkipListStress(long randSeed, int clients, int ops, int range) {
+        seed = randSeed;
+        numClients = Math.max(clients, 1);
+        numOps = Math.max(ops, 1);
+        keyRange = Math.max(range, 1);
+        clock = new AtomicLong();
+        listLock = new ReentrantLock();
+    }
+
+    /**
+     * Run every configuration in every mode.
+     *
+     * @return A description of the first failure, or null.
+     * @retval null Every run passed.
+     */
+    public String RunAll() throws Exception {
+        String failure;
+        int config;
+
+        for (config = 0; config < CONFIG_NAMES.length; config++) {
+            failure = RunBatched(config);
+            if (failure != null) {
+                return "batched " + CONFIG_NAMES[config] + ": " + failure;
+            }
+            System.out.println("batched    " + CONFIG_NAMES[config] + " ok");
+
+            if (config == (CONFIG_NAMES.length - 1)) {
+                continue;
+            }
+
+            failure = RunTtl(config);
+            if (failure != null) {
+                return "ttl " + CONFIG_NAMES[config] + ": " + failure;
+            }
+            System.out.println("ttl        " + CONFIG_NAMES[config] + " ok");
+
+            failure = RunConcurrent(config);
+            if (failure != null) {
+                return "concurrent " + CONFIG_NAMES[config] + ": " + failure;
+            }
+            System.out.println("concurrent " + CONFIG_NAMES[config] + " ok");
+
+            failure = RunServer(config);
+            if (failure != null) {
+                return "server " + CONFIG_NAMES[config] + ": " + failure;
+            }
+            System.out.println("server     " + CONFIG_NAMES[config] + " ok");
+        }
+
+        return null;
+    }
+
+    /**
+     * Create a skip list for a configuration.
+     *
+     * @param config The index of the configuration.
+     * @return A new, empty skip list with its coin seeded.
+     */
+    private SkipList NewSkipList(int config) {
+        SkipList list;
+
+        if ((config == 1) || (config == 3)) {
+            list = new SkipList(SkipList.DETERMINISTIC);
+        } else {
+            list = new SkipList(SkipList.RANDOMIZED);
+        }
+
+        list.SetVerbose(false);
+        list.SetSeed(seed);
+
+        if (config == 2) {
+            // A small threshold and interval so that towers are
+            // promoted and demoted often during a short run.
+            list.SetAdaptive(true, 2, 64);
+        }
+
+        if ((config == 2) || (config == 3)) {
+            list.SetFinger(true);
+            // A tiny filter so that it has to grow during the run.
+            list.SetFilter(4, 8);
+        }
+
+        return list;
+    }
+
+    /**
+     * Run the batched mode.
+     *
+     * Interleave the operations of the clients on this thread using a
+     * seeded scheduler, comparing every result to a TreeSet. Besides
+     * Find, Insert, Remove and Range, the clients keep a second skip
+     * list to take the set operations with, split and join the skip
+     * list, and join two skip lists built up independently. The
+     * operation metrics are checked against the operations at the end.
+     * @param config The index of the configuration.
+     * @return A description of the first failure, or null.
+     */
+    private String RunBatched(int config) {
+        SkipList list, other;
+        UnrolledSkipList unrolled;
+        TreeSet<Integer> model, otherModel;
+        Random scheduler;
+        Random[] clients;
+        String failure;
+        int step, op, k, hi, c;
+        long finds, inserts, removes, misses;
+        boolean expected, actual;
+
+        list = null;
+        other = null;
+        unrolled = null;
+        if (config == (CONFIG_NAMES.length - 1)) {
+            unrolled = new UnrolledSkipList(8);
+            unrolled.SetSeed(seed);
+        } else {
+            list = NewSkipList(config);
+            other = NewSkipList(config);
+        }
+
+        model = new TreeSet<Integer>();
+        otherModel = new TreeSet<Integer>();
+        scheduler = new Random(seed);
+        clients = new Random[numClients];
+        for (c = 0; c < numClients; c++) {
+            clients[c] = new Random(ClientSeed(c));
+        }
+        finds = 0;
+        inserts = 0;
+        removes = 0;
+        misses = 0;
+
+        for (step = 0; step < (numClients * numOps); step++) {
+            c = scheduler.nextInt(numClients);
+            op = clients[c].nextInt(100);
+            k = 1 + clients[c].nextInt(keyRange);
+
+            if (op < 40) {
+                expected = model.contains(k);
+                actual = (list != null) ? (list.Find(k) != null)
+                                        : unrolled.Find(k);
+                finds = finds + 1;
+                misses = misses + (expected ? 0 : 1);
+                op = OP_FIND;
+            } else if (op < 65) {
+                expected = model.add(k);
+                actual = (list != null) ? (list.Insert(k) != null)
+                                        : unrolled.Insert(k);
+                inserts = inserts + 1;
+                op = OP_INSERT;
+            } else if (op < 88) {
+                expected = model.remove(k);
+                actual = (list != null) ? list.Remove(k)
+                                        : unrolled.Remove(k);
+                removes = removes + 1;
+                op = OP_REMOVE;
+            } else if (op < 93) {
+                hi = k + (keyRange / 8);
+                failure = CheckRange((list != null) ? list.Range(k, hi)
+                                                    : unrolled.Range(k, hi),
+                    model, k, hi);
+                if (failure != null) {
+                    return "step " + step + ": " + failure;
+                }
+                continue;
+            } else if (list == null) {
+                continue;
+            } else if (op < 97) {
+                // Change the second skip list, which the set operations
+                // are taken with.
+                if (clients[c].nextBoolean()) {
+                    expected = otherModel.add(k);
+                    actual = other.Insert(k) != null;
+                    op = OP_INSERT;
+                } else {
+                    expected = otherModel.remove(k);
+                    actual = other.Remove(k);
+                    op = OP_REMOVE;
+                }
+            } else {
+                if (op == 97) {
+                    failure = CheckSplitJoin(list, model, k);
+                } else if (op == 98) {
+                    failure = CheckSetOps(list, model, other, otherModel);
+                } else {
+                    failure = CheckJoin(config, model, k, clients[c]);
+                }
+                if (failure != null) {
+                    return "step " + step + ": " + failure;
+                }
+                continue;
+            }
+
+            if (expected != actual) {
+                return "step " + step + ": " + OpName(op) + " " + k +
+                    " returned " + actual + " but the model says " + expected;
+            }
+
+            if ((list != null) && ((step % 997) == 0)) {
+                failure = list.CheckInvariants();
+                if (failure != null) {
+                    return "step " + step + ": " + failure;
+                }
+            }
+        }
+
+        if (list != null) {
+            failure = list.CheckInvariants();
+            if (failure == null) {
+                failure = CheckContents(list, model);
+            }
+            if (failure == null) {
+                failure = CheckStats(config, list, model, finds, inserts,
+                    removes, misses);
+            }
+            return (failure != null) ? ("end: " + failure) : null;
+        }
+
+        if (unrolled.GetSize() != model.size()) {
+            return "end: size " + unrolled.GetSize() + " but the model has " +
+                model.size();
+        }
+        for (k = 1; k <= keyRange; k++) {
+            if (unrolled.Find(k) != model.contains(k)) {
+                return "end: Find " + k + " disagrees with the model";
+            }
+        }
+
+        return CheckRange(unrolled.Range(Integer.MIN_VALUE,
+            Integer.MAX_VALUE), model, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run the time to live mode.
+     *
+     * Drive a skip list whose clock is moved by hand with keys inserted
+     * with and without a time to live, comparing every result to a map
+     * from each key to the time it expires. Finds, Removes, Ranges and
+     * Inserts on expired keys, and ReapExpired slices of every size,
+     * are mixed in. At the end the clock is moved far ahead and the
+     * reaper has to remove every key with a time to live without
+     * changing the operation metrics.
+     * @param config The index of the configuration.
+     * @return A description of the first failure, or null.
+     */
+    private String RunTtl(int config) {
+        final AtomicLong now;
+        SkipList list;
+        TreeMap<Integer, Long> model;
+        TreeSet<Integer> live;
+        Random rand;
+        SkipListStats before, after;
+        String failure;
+        int step, op, k, hi, reaped;
+        long ttl;
+        boolean expected, actual;
+
+        now = new AtomicLong(1);
+        list = NewSkipList(config);
+        list.SetClock(new LongSupplier() {
+            public long getAsLong() {
+                return now.get();
+            }
+        });
+        model = new TreeMap<Integer, Long>();
+        rand = new Random(seed);
+
+        for (step = 0; step < ((numClients * numOps) / 4); step++) {
+            op = rand.nextInt(100);
+            k = 1 + rand.nextInt(keyRange);
+            expected = IsLive(model, k, now.get());
+
+            if (op < 30) {
+                actual = list.Find(k) != null;
+                op = OP_FIND;
+            } else if (op < 60) {
+                // Mostly short times to live, but also forever, one too
+                // long to add to the clock and negative ones which have
+                // to be refused.
+                op = rand.nextInt(20);
+                if (op == 0) {
+                    ttl = Long.MAX_VALUE;
+                } else if (op == 1) {
+                    ttl = -1 - rand.nextInt(1000);
+                    expected = true;
+                } else if (op < 6) {
+                    ttl = 0;
+                } else {
+                    ttl = 1 + rand.nextInt(50);
+                }
+
+                if (ttl < 0) {
+                    actual = list.Insert(k, ttl) == null;
+                } else {
+                    actual = list.Insert(k, ttl) != null;
+                    expected = !expected;
+                    if (expected) {
+                        model.put(k, (ttl == Long.MAX_VALUE) ? Long.MAX_VALUE
+                            : ((ttl == 0) ? 0 : (now.get() + (ttl * 1000000L))));
+                    }
+                }
+                op = OP_INSERT;
+            } else if (op < 75) {
+                actual = list.Remove(k);
+                model.remove(k);
+                op = OP_REMOVE;
+            } else if (op < 85) {
+                hi = k + (keyRange / 8);
+                failure = CheckRange(list.Range(k, hi),
+                    LiveKeys(model, now.get()), k, hi);
+                if (failure != null) {
+                    return "step " + step + ": " + failure;
+                }
+                continue;
+            } else if (op < 95) {
+                now.addAndGet(rand.nextInt(5) * 1000000L);
+                continue;
+            } else {
+                hi = rand.nextInt(8);
+                reaped = list.ReapExpired(hi);
+                if ((reaped < 0) || (reaped > hi)) {
+                    return "step " + step + ": ReapExpired " + hi +
+                        " returned " + reaped;
+                }
+                continue;
+            }
+
+            if (expected != actual) {
+                return "step " + step + ": " + OpName(op) + " " + k +
+                    " returned " + actual + " but the model says " + expected;
+            }
+
+            if ((step % 997) == 0) {
+                failure = list.CheckInvariants();
+                if (failure != null) {
+                    return "step " + step + ": " + failure;
+                }
+            }
+        }
+
+        failure = list.CheckInvariants();
+        if (failure == null) {
+            failure = CheckContents(list, LiveKeys(model, now.get()));
+        }
+        if (failure != null) {
+            return "end: " + failure;
+        }
+
+        // An hour later only the keys which never expire are left, and
+        // two full passes of the reaper have to have unlinked the rest.
+        now.addAndGet(3600L * 1000000000L);
+        live = LiveKeys(model, now.get());
+        before = list.GetStats();
+        list.ReapExpired(keyRange + 1);
+        list.ReapExpired(keyRange + 1);
+        after = list.GetStats();
+
+        if (after.GetNumKeys() != live.size()) {
+            return "after reaping " + after.GetNumKeys() +
+                " keys are linked but " + live.size() + " never expire";
+        }
+        if ((after.GetNumFinds() != before.GetNumFinds()) ||
+            (after.GetComparisons() != before.GetComparisons())) {
+            return "reaping changed the operation metrics";
+        }
+
+        failure = list.CheckInvariants();
+        if (failure == null) {
+            failure = CheckContents(list, live);
+        }
+
+        return (failure != null) ? ("after reaping: " + failure) : null;
+    }
+
+    /**
+     * Check if a key of the time to live model is live.
+     *
+     * @param model The expiry time of every key, 0 for never.
+     * @param k The key.
+     * @param now The time of the clock.
+     * @return True if the key is in the model and has not expired.
+     */
+    private boolean IsLive(TreeMap<Integer, Long> model, int k, long now) {
+        Long expiresAt;
+
+        expiresAt = model.get(k);
+
+        return (expiresAt != null) &&
+               ((expiresAt.longValue() == 0) || (expiresAt.longValue() > now));
+    }
+
+    /**
+     * Obtain the live keys of the time to live model.
+     *
+     * @param model The expiry time of every key, 0 for never.
+     * @param now The time of the clock.
+     * @return The keys which have not expired.
+     */
+    private TreeSet<Integer> LiveKeys(TreeMap<Integer, Long> model,
+        long now) {
+
+        TreeSet<Integer> live;
+
+        live = new TreeSet<Integer>();
+        for (Integer k : model.keySet()) {
+            if (IsLive(model, k.intValue(), now)) {
+                live.add(k);
+            }
+        }
+
+        return live;
+    }
+
+    /**
+     * Check a range against the model.
+     *
+     * @param keys The keys the skip list returned for the range.
+     * @param model The model of the skip list.
+     * @param lo The smallest key of the range.
+     * @param hi The largest key of the range.
+     * @return A description of the failure, or null.
+     */
+    private String CheckRange(int[] keys, TreeSet<Integer> model, int lo,
+        int hi) {
+
+        SortedSet<Integer> expected;
+        Iterator<Integer> it;
+        int i;
+
+        expected = model.subSet(lo, true, hi, true);
+
+        if (keys.length != expected.size()) {
+            return "Range " + lo + " " + hi + " returned " + keys.length +
+                " keys but the model has " + expected.size();
+        }
+
+        it = expected.iterator();
+        for (i = 0; i < keys.length; i++) {
+            if (keys[i] != it.next().intValue()) {
+                return "Range " + lo + " " + hi + " key " + i + " is " +
+                    keys[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check a split followed by a join.
+     *
+     * Split the skip list at a key, check both halves and join them
+     * back together, checking the structure after each step.
+     * @param list The skip list.
+     * @param model The model of the skip list.
+     * @param k The key to split at.
+     * @return A description of the failure, or null.
+     */
+    private String CheckSplitJoin(SkipList list, TreeSet<Integer> model,
+        int k) {
+
+        SkipList right;
+        String failure;
+
+        right = list.Split(k);
+
+        failure = list.CheckInvariants();
+        if (failure == null) {
+            failure = right.CheckInvariants();
+        }
+        if (failure == null) {
+            failure = CheckContents(list, new TreeSet<Integer>(
+                model.headSet(k)));
+        }
+        if (failure == null) {
+            failure = CheckContents(right, new TreeSet<Integer>(
+                model.tailSet(k)));
+        }
+        if (failure != null) {
+            return "after Split " + k + ": " + failure;
+        }
+
+        if (!list.Join(right)) {
+            return "Join after Split " + k + " was refused";
+        }
+
+        failure = list.CheckInvariants();
+        if (failure == null) {
+            failure = right.CheckInvariants();
+        }
+        if (failure == null) {
+            failure = CheckContents(right, new TreeSet<Integer>());
+        }
+        if (failure != null) {
+            return "after Join " + k + ": " + failure;
+        }
+
+        return null;
+    }
+
+    /**
+     * Check the set operations.
+     *
+     * Take the union, the intersection and both differences of the skip
+     * list and the second skip list, and check the structure and keys
+     * of each result against the models.
+     * @param list The skip list.
+     * @param model The model of the skip list.
+     * @param other The second skip list.
+     * @param otherModel The model of the second skip list.
+     * @return A description of the failure, or null.
+     */
+    private String CheckSetOps(SkipList list, TreeSet<Integer> model,
+        SkipList other, TreeSet<Integer> otherModel) {
+
+        TreeSet<Integer> expected;
+        String failure;
+
+        expected = new TreeSet<Integer>(model);
+        expected.addAll(otherModel);
+        failure = CheckResult("Union", list.Union(other), expected);
+
+        if (failure == null) {
+            expected = new TreeSet<Integer>(model);
+            expected.retainAll(otherModel);
+            failure = CheckResult("Intersect", list.Intersect(other),
+                expected);
+        }
+
+        if (failure == null) {
+            expected = new TreeSet<Integer>(model);
+            expected.removeAll(otherModel);
+            failure = CheckResult("Difference", list.Difference(other),
+                expected);
+        }
+
+        if (failure == null) {
+            expected = new TreeSet<Integer>(otherModel);
+            expected.removeAll(model);
+            failure = CheckResult("reverse Difference",
+                other.Difference(list), expected);
+        }
+
+        return failure;
+    }
+
+    /**
+     * Check the result of a set operation.
+     *
+     * @param name The name of the set operation.
+     * @param result The skip list the set operation returned.
+     * @param expected The keys the result should hold.
+     * @return A description of the failure, or null.
+     */
+    private String CheckResult(String name, SkipList result,
+        TreeSet<Integer> expected) {
+
+        String failure;
+
+        failure = result.CheckInvariants();
+        if (failure == null) {
+            failure = CheckContents(result, expected);
+        }
+
+        return (failure != null) ? (name + ": " + failure) : null;
+    }
+
+    /**
+     * Check a join of two independently built skip lists.
+     *
+     * Build one skip list from the keys of the model less than a key
+     * and another from the rest, inserting the keys in random order.
+     * Joining them the wrong way around has to be refused, and joining
+     * them the right way around has to give the keys of the model.
+     * @param config The index of the configuration.
+     * @param model The model of the skip list.
+     * @param k The smallest key of the second skip list.
+     * @param rand The random numbers of the client.
+     * @return A description of the failure, or null.
+     */
+    private String CheckJoin(int config, TreeSet<Integer> model, int k,
+        Random rand) {
+
+        SkipList left, right;
+        ArrayList<Integer> keys;
+        String failure;
+
+        left = NewSkipList(config);
+        keys = new ArrayList<Integer>(model.headSet(k));
+        Collections.shuffle(keys, rand);
+        for (Integer key : keys) {
+            left.Insert(key.intValue());
+        }
+
+        right = NewSkipList(config);
+        keys = new ArrayList<Integer>(model.tailSet(k));
+        Collections.shuffle(keys, rand);
+        for (Integer key : keys) {
+            right.Insert(key.intValue());
+        }
+
+        if (!model.headSet(k).isEmpty() && !model.tailSet(k).isEmpty() &&
+            right.Join(left)) {
+            return "Join at " + k + " the wrong way around was accepted";
+        }
+
+        if (!left.Join(right)) {
+            return "Join at " + k + " was refused";
+        }
+
+        failure = left.CheckInvariants();
+        if (failure == null) {
+            failure = right.CheckInvariants();
+        }
+        if (failure == null) {
+            failure = CheckContents(left, model);
+        }
+        if (failure == null) {
+            failure = CheckContents(right, new TreeSet<Integer>());
+        }
+
+        return (failure != null) ? ("after Join at " + k + ": " + failure)
+                                 : null;
+    }
+
+    /**
+     * Check the operation metrics.
+     *
+     * Check the stats of the skip list against the operations the
+     * batched mode did on it. Find counts only the Finds, for either
+     * engine, not the search each Remove makes. Every counted
+     * operation lands in a latency bucket. Housekeeping such as aging,
+     * and the set operations, must not add to the counters.
+     * @param config The index of the configuration.
+     * @param list The skip list.
+     * @param model The model of the skip list.
+     * @param finds The number of Find calls.
+     * @param inserts The number of Insert calls.
+     * @param removes The number of Remove calls.
+     * @param misses The number of Find calls for absent keys.
+     * @return A description of the failure, or null.
+     */
+    private String CheckStats(int config, SkipList list,
+        TreeSet<Integer> model, long finds, long inserts, long removes,
+        long misses) {
+
+        SkipListStats stats;
+        int[] heights;
+        long sum;
+        int h;
+
+        stats = list.GetStats();
+
+        if ((stats.GetNumFinds() != finds) ||
+            (stats.GetNumInserts() != inserts) ||
+            (stats.GetNumRemoves() != removes)) {
+            return "stats count " + stats.GetNumFinds() + "/" +
+                stats.GetNumInserts() + "/" + stats.GetNumRemoves() +
+                " finds/inserts/removes but " + finds + "/" +
+                inserts + "/" + removes + " were made";
+        }
+
+        if ((Sum(stats.GetFindLatency()) != stats.GetNumFinds()) ||
+            (Sum(stats.GetInsertLatency()) != stats.GetNumInserts()) ||
+            (Sum(stats.GetRemoveLatency()) != stats.GetNumRemoves())) {
+            return "the latency histograms do not add up to the counts";
+        }
+
+        if ((stats.GetNumKeys() != model.size()) ||
+            (stats.GetNumLevels() != list.GetNumLevels())) {
+            return "stats show " + stats.GetNumKeys() + " keys on " +
+                stats.GetNumLevels() + " levels";
+        }
+
+        heights = stats.GetHeightHistogram();
+        sum = 0;
+        for (h = 0; h < heights.length; h++) {
+            sum = sum + heights[h];
+        }
+        if (sum != stats.GetNumKeys()) {
+            return "the height histogram holds " + sum + " keys";
+        }
+
+        if ((config == 2) || (config == 3)) {
+            if ((stats.GetFilterMemoryBytes() <= 0) ||
+                (stats.GetFilterFalsePositiveRate() < 0.0) ||
+                (stats.GetFilterFalsePositiveRate() >= 1.0)) {
+                return "the filter stats are off: " + stats;
+            }
+            if ((stats.GetFilterRejects() + stats.GetFilterFalsePositives()) >
+                stats.GetNumFinds()) {
+                return "the filter saw more finds than were made";
+            }
+            // With 8 bit fingerprints only a few percent of the finds
+            // for absent keys get past the filter.
+            if ((misses >= 20) && (stats.GetFilterRejects() == 0)) {
+                return "the filter rejected none of " + misses + " misses";
+            }
+        } else if ((stats.GetFilterMemoryBytes() != 0) ||
+                   (stats.GetFilterRejects() != 0)) {
+            return "filter stats without a filter: " + stats;
+        }
+
+        return null;
+    }
+
+    /**
+     * Add up a latency histogram.
+     *
+     * @param buckets The latency histogram.
+     * @return The number of operations in the histogram.
+     */
+    private long Sum(long[] buckets) {
+        long sum;
+        int i;
+
+        sum = 0;
+        for (i = 0; i < buckets.length; i++) {
+            sum = sum + buckets[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Check the keys of a skip list against the model.
+     *
+     * @param list The skip list.
+     * @param model The keys the skip list should hold.
+     * @return A description of the failure, or null.
+     */
+    private String CheckContents(SkipList list, TreeSet<Integer> model) {
+        return CheckRange(list.Range(Integer.MIN_VALUE + 1,
+            Integer.MAX_VALUE - 1), model, Integer.MIN_VALUE + 1,
+            Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Run the concurrent mode.
+     *
+     * Run one thread per client, all sharing one skip list under
+     * listLock, and check the recorded history for linearizability.
+     * @param config The index of the configuration.
+     * @return A description of the first failure, or null.
+     */
+    private String RunConcurrent(int config) throws InterruptedException {
+        final SkipList list;
+        Thread[] threads;
+        String failure;
+        int c;
+
+        list = NewSkipList(config);
+        listLock = new ReentrantLock();
+        NewHistory();
+
+        threads = new Thread[numClients];
+        for (c = 0; c < numClients; c++) {
+            final int client = c;
+            threads[c] = new Thread(new Runnable() {
+                public void run() {
+                    RunClient(list, client);
+                }
+            }, "SkipListStress-" + c);
+            threads[c].start();
+        }
+        for (c = 0; c < numClients; c++) {
+            threads[c].join();
+        }
+
+        failure = list.CheckInvariants();
+        if (failure != null) {
+            return failure;
+        }
+
+        return CheckHistory(list);
+    }
+
+    /**
+     * Run a client of the concurrent mode.
+     *
+     * @param list The shared skip list.
+     * @param c The index of the client.
+     */
+    private void RunClient(SkipList list, int c) {
+        Random rand;
+        int i, op, k;
+        boolean result;
+
+        rand = new Random(ClientSeed(c));
+
+        for (i = 0; i < numOps; i++) {
+            op = RandomOp(rand);
+            k = 1 + rand.nextInt(keyRange);
+
+            histOp[c][i] = op;
+            histKey[c][i] = k;
+            histInvoke[c][i] = clock.getAndIncrement();
+
+            listLock.lock();
+            try {
+                if (op == OP_FIND) {
+                    result = list.Find(k) != null;
+                } else if (op == OP_INSERT) {
+                    result = list.Insert(k) != null;
+                } else if (op == OP_REMOVE) {
+                    result = list.Remove(k);
+                } else {
+                    result = IsSorted(list.Range(k, k + (keyRange / 8)), k,
+                        k + (keyRange / 8));
+                }
+            } finally {
+                listLock.unlock();
+            }
+
+            histRespond[c][i] = clock.getAndIncrement();
+            histResult[c][i] = result ? 1 : 0;
+        }
+    }
+
+    /**
+     * Run the server mode.
+     *
+     * Serve a skip list on a free port and run one connection per
+     * client, each sending its operations in pipelined batches. Every
+     * operation of a batch is invoked when the batch is written and
+     * responds when its response line is read.
+     * @param config The index of the configuration.
+     * @return A description of the first failure, or null.
+     */
+    private String RunServer(int config) throws Exception {
+        final SkipList list;
+        final SkipListServer server;
+        final String[] errors;
+        Thread[] threads;
+        String failure;
+        int c;
+
+        list = NewSkipList(config);
+        listLock = new ReentrantLock();
+        server = new SkipListServer(list, 0, listLock);
+        server.Start();
+        NewHistory();
+
+        errors = new String[numClients];
+        threads = new Thread[numClients];
+        for (c = 0; c < numClients; c++) {
+            final int client = c;
+            threads[c] = new Thread(new Runnable() {
+                public void run() {
+                    errors[client] = RunConnection(server.GetPort(), client);
+                }
+            }, "SkipListStress-" + c);
+            threads[c].start();
+        }
+        for (c = 0; c < numClients; c++) {
+            threads[c].join();
+        }
+
+        server.Stop();
+
+        for (c = 0; c < numClients; c++) {
+            if (errors[c] != null) {
+                return "connection " + c + ": " + errors[c];
+            }
+        }
+
+        listLock.lock();
+        try {
+            failure = list.CheckInvariants();
+        } finally {
+            listLock.unlock();
+        }
+        if (failure != null) {
+            return failure;
+        }
+
+        return CheckHistory(list);
+    }
+
+    /**
+     * Run a connection of the server mode.
+     *
+     * @param port The port of the server.
+     * @param c The index of the client.
+     * @return A description of the failure, or null.
+     */
+    private String RunConnection(int port, int c) {
+        java.net.Socket socket;
+        java.io.BufferedReader in;
+        java.io.Writer out;
+        Random rand;
+        String line;
+        int sent, batch, i, op, k, lo, hi;
+        long invoke;
+
+        rand = new Random(ClientSeed(c));
+
+        try {
+            socket = new java.net.Socket("localhost", port);
+            in = new java.io.BufferedReader(new java.io.InputStreamReader(
+                socket.getInputStream(), "US-ASCII"));
+            out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                socket.getOutputStream(), "US-ASCII"));
+
+            sent = 0;
+            while (sent < numOps) {
+                batch = Math.min(1 + rand.nextInt(16), numOps - sent);
+
+                invoke = clock.getAndIncrement();
+                for (i = sent; i < (sent + batch); i++) {
+                    op = RandomOp(rand);
+                    k = 1 + rand.nextInt(keyRange);
+                    histOp[c][i] = op;
+                    histKey[c][i] = k;
+                    histInvoke[c][i] = invoke;
+                    if (op == OP_RANGE) {
+                        out.write("RANGE " + k + " " + (k + (keyRange / 8)) +
+                            "\n");
+                    } else {
+                        out.write(OpName(op) + " " + k + "\n");
+                    }
+                }
+                out.flush();
+
+                for (i = sent; i < (sent + batch); i++) {
+                    line = in.readLine();
+                    histRespond[c][i] = clock.getAndIncrement();
+                    if ((line == null) || line.startsWith("ERR")) {
+                        socket.close();
+                        return "bad response " + line;
+                    }
+                    if (histOp[c][i] == OP_RANGE) {
+                        lo = histKey[c][i];
+                        hi = lo + (keyRange / 8);
+                        histResult[c][i] =
+                            IsSorted(ParseRange(line), lo, hi) ? 1 : 0;
+                    } else {
+                        histResult[c][i] = line.equals("1") ? 1 : 0;
+                    }
+                }
+
+                sent = sent + batch;
+            }
+
+            out.write("QUIT\n");
+            out.flush();
+            socket.close();
+        } catch (java.io.IOException e) {
+            return e.toString();
+        }
+
+        return null;
+    }
+
+    /**
+     * Set up an empty history.
+     */
+    private void NewHistory() {
+        histOp = new int[numClients][numOps];
+        histKey = new int[numClients][numOps];
+        histResult = new int[numClients][numOps];
+        histInvoke = new long[numClients][numOps];
+        histRespond = new long[numClients][numOps];
+        clock.set(0);
+    }
+
+    /**
+     * Check the recorded history.
+     *
+     * Check that every range returned sorted keys within its bounds and
+     * that the history of every key is linearizable. The final contents
+     * of the skip list are added to the history of each key as a Find
+     * which happens after every other operation.
+     * @param list The skip list after all operations have responded.
+     * @return A description of the first failure, or null.
+     */
+    private String CheckHistory(SkipList list) {
+        List<List<long[]>> perKey;
+        List<long[]> ops;
+        long end;
+        int c, i, k;
+        boolean present;
+
+        perKey = new ArrayList<List<long[]>>(keyRange + 1);
+        for (k = 0; k <= keyRange; k++) {
+            perKey.add(new ArrayList<long[]>());
+        }
+
+        for (c = 0; c < numClients; c++) {
+            for (i = 0; i < numOps; i++) {
+                if (histOp[c][i] == OP_RANGE) {
+                    if (histResult[c][i] == 0) {
+                        return "client " + c + " op " + i + ": RANGE " +
+                            histKey[c][i] + " was not sorted and in bounds";
+                    }
+                    continue;
+                }
+                perKey.get(histKey[c][i]).add(new long[] {
+                    histInvoke[c][i], histRespond[c][i], histOp[c][i],
+                    histResult[c][i]
+                });
+            }
+        }
+
+        end = clock.getAndIncrement();
+
+        for (k = 1; k <= keyRange; k++) {
+            listLock.lock();
+            try {
+                present = list.Range(k, k).length == 1;
+            } finally {
+                listLock.unlock();
+            }
+            ops = perKey.get(k);
+            ops.add(new long[] {end, end + 1, OP_FIND, present ? 1 : 0});
+
+            if (!IsLinearizable(ops)) {
+                return "history of key " + k + " is not linearizable: " +
+                    DescribeHistory(ops);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check the history of one key for linearizability.
+     *
+     * This is the search of Wing and Gong with the memoization of
+     * Lowe. The operations are tried in order of invocation. An
+     * operation may be linearized next if it was invoked before every
+     * operation that has not been linearized yet responded, and if its
+     * recorded result is what the set would have returned at that
+     * point. When no operation fits, the search backtracks. States
+     * that were already explored (the same operations linearized with
+     * the same presence of the key) are not explored again.
+     * @param ops The operations of the key as {invoke, respond, op,
+     * result} arrays.
+     * @return True if the history is linearizable.
+     */
+    private boolean IsLinearizable(List<long[]> ops) {
+        long[][] hist;
+        int[] stack;
+        boolean[] stackState;
+        BitSet done, state;
+        HashSet<BitSet> seen;
+        long minRespond;
+        int n, depth, next, i;
+        boolean present, result;
+
+        n = ops.size();
+        hist = ops.toArray(new long[n][]);
+        Arrays.sort(hist, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+
+        stack = new int[n];
+        stackState = new boolean[n];
+        done = new BitSet(n);
+        seen = new HashSet<BitSet>();
+        present = false;
+        depth = 0;
+        next = 0;
+
+        while (depth < n) {
+            // The earliest response of an operation not yet linearized
+            // bounds which operations may go next.
+            minRespond = Long.MAX_VALUE;
+            for (i = done.nextClearBit(0); i < n;
+                 i = done.nextClearBit(i + 1)) {
+                minRespond = Math.min(minRespond, hist[i][1]);
+            }
+
+            for (i = done.nextClearBit(next); i < n;
+                 i = done.nextClearBit(i + 1)) {
+                if (hist[i][0] > minRespond) {
+                    i = n;
+                    break;
+                }
+
+                result = hist[i][3] == 1;
+                if (((hist[i][2] == OP_FIND) && (result == present)) ||
+                    ((hist[i][2] == OP_INSERT) && (result != present)) ||
+                    ((hist[i][2] == OP_REMOVE) && (result == present))) {
+
+                    state = (BitSet)done.clone();
+                    state.set(i);
+                    state.set(n, present ^ (hist[i][2] != OP_FIND && result));
+                    if (seen.add(state)) {
+                        break;
+                    }
+                }
+            }
+
+            if (i < n) {
+                stack[depth] = i;
+                stackState[depth] = present;
+                done.set(i);
+                if ((hist[i][2] != OP_FIND) && (hist[i][3] == 1)) {
+                    present = !present;
+                }
+                depth = depth + 1;
+                next = 0;
+            } else {
+                if (depth == 0) {
+                    return false;
+                }
+                depth = depth - 1;
+                done.clear(stack[depth]);
+                present = stackState[depth];
+                next = stack[depth] + 1;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Describe the history of one key.
+     *
+     * @param ops The operations of the key.
+     * @return The operations as text, for a failure message.
+     */
+    private String DescribeHistory(List<long[]> ops) {
+        StringBuffer buf;
+        long[] h;
+        int i;
+
+        buf = new StringBuffer();
+        for (i = 0; i < ops.size(); i++) {
+            h = ops.get(i);
+            buf.append("\n  [" + h[0] + "," + h[1] + "] " +
+                OpName((int)h[2]) + " -> " + h[3]);
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Pick a random operation.
+     *
+     * @param rand The random numbers of the client.
+     * @return One of the OP_ constants.
+     */
+    private int RandomOp(Random rand) {
+        int op;
+
+        op = rand.nextInt(20);
+        if (op < 8) {
+            return OP_FIND;
+        } else if (op < 13) {
+            return OP_INSERT;
+        } else if (op < 19) {
+            return OP_REMOVE;
+        }
+
+        return OP_RANGE;
+    }
+
+    /**
+     * Check that range keys are sorted and within bounds.
+     *
+     * @param keys The keys of a range.
+     * @param lo The smallest key of the range.
+     * @param hi The largest key of the range.
+     * @return True if the keys are strictly increasing and in bounds.
+     */
+    private boolean IsSorted(int[] keys, int lo, int hi) {
+        int i;
+
+        for (i = 0; i < keys.length; i++) {
+            if ((keys[i] < lo) || (keys[i] > hi) ||
+                ((i > 0) && (keys[i - 1] >= keys[i]))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse a RANGE response line.
+     *
+     * @param line The response line.
+     * @return The keys of the response.
+     */
+    private int[] ParseRange(String line) {
+        String[] words;
+        int[] keys;
+        int i;
+
+        words = line.split(" ");
+        keys = new int[Integer.parseInt(words[0])];
+        for (i = 0; i < keys.length; i++) {
+            keys[i] = Integer.parseInt(words[i + 1]);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Obtain the name of an operation.
+     *
+     * @param op One of the OP_ constants.
+     * @return The name of the operation as used by the server.
+     */
+    private String OpName(int op) {
+        if (op == OP_FIND) {
+            return "FIND";
+        } else if (op == OP_INSERT) {
+            return "INSERT";
+        } else if (op == OP_REMOVE) {
+            return "REMOVE";
+        }
+
+        return "RANGE";
+    }
+
+    /**
+     * Obtain the seed of a client.
+     *
+     * @param c The index of the client.
+     * @return The seed of the operations of the client.
+     */
+    private long ClientSeed(int c) {
+        return (seed * 1000003L) + c;
+    }
+
+    /**
+     * Run the stress harness.
+     *
+     * Usage: java SkipListStress [seed] [clients] [ops] [range]. A run
+     * without a seed picks one from the clock and prints it. Exits with
+     * status 1 if any run fails.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        SkipListStress stress;
+        String failure;
+        long randSeed;
+        int clients, ops, range;
+
+        randSeed = (args.length > 0) ? Long.parseLong(args[0])
+                                     : System.nanoTime();
+        clients = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        ops = (args.length > 2) ? Integer.parseInt(args[2]) : 20000;
+        range = (args.length > 3) ? Integer.parseInt(args[3]) : 256;
+
+        System.out.println("SkipListStress seed " + randSeed + ", " +
+            clients + " clients, " + ops + " ops each, keys 1.." + range);
+
+        stress = new SkipListStress(randSeed, clients, ops, range);
+        failure = stress.RunAll();
+
+        if (failure != null) {
+            System.out.println("FAILED " + failure);
+            System.out.println("replay with: java SkipListStress " +
+                randSeed + " " + clients + " " + ops + " " + range);
+            System.exit(1);
+        }
+
+        System.out.println("all runs passed");
+    }
+}
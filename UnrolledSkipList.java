@@ -0,0 +1,402 @@
+/**
+ * @file UnrolledSkipList.java
+ * @author Andrew De Ponte
+ * @brief UnrolledSkipList implementation class file.
+ *
+ * A file containing an implementation of an unrolled skip list. Level
+ * zero of an unrolled skip list is a list of blocks of keys rather than
+ * a list of nodes with one key each, and the levels above it index the
+ * blocks. Unlike the SkipList class, this class has nothing to do with
+ * drawing. It is the variant to use when memory footprint and scan
+ * speed matter more than showing how the algorithms work.
+ */
+
+import java.util.Random;
+
+/**
+ * A class to implement an unrolled skip list.
+ *
+ * A class designed to implement a skip list whose level zero holds
+ * sorted blocks of keys in primitive arrays. Every block has an index
+ * node on the lowest index level, and the index towers above that are
+ * decided by flipping a coin just like the towers of a SkipList. The
+ * first block is never removed and its tower is the tower of negative
+ * infinity nodes, so searches never need to compare against it. Blocks
+ * are split in half when they overflow and merged with a neighbor when
+ * they fall below a quarter full.
+ */
+public class UnrolledSkipList {
+    private SkipListBlock firstBlock;
+    private SkipListIndexNode topHeadNode;
+    private int indexHeight;
+    private int blockCapacity;
+    private int numKeys;
+    private int numBlocks;
+    private Random rand;
+
+    /**
+     * Construct an empty UnrolledSkipList.
+     *
+     * Create an empty unrolled skip list with blocks of 32 keys.
+     */
+    public UnrolledSkipList() {
+        this(32);
+    }
+
+    /**
+     * Construct an empty UnrolledSkipList.
+     *
+     * Create an empty unrolled skip list with the given block size.
+     * Blocks of 16 to 64 keys make good use of the cache lines.
+     * @param capacity The number of keys per block, at least 4.
+     */
+    public UnrolledSkipList(int capacity) {
+        blockCapacity = Math.max(capacity, 4);
+        firstBlock = new SkipListBlock(blockCapacity);
+        topHeadNode = new SkipListIndexNode(firstBlock, null);
+        indexHeight = 1;
+        numKeys = 0;
+        numBlocks = 1;
+        rand = new Random();
+    }
+
+    /**
+     * Search for a key in the unrolled skip list.
+     *
+     * @param k The key value to search for.
+     * @return The true/false depending on if the key was found.
+     */
+    public boolean Find(int k) {
+        SkipListBlock b;
+        int pos;
+
+        b = SearchBlock(k, null);
+        pos = b.Rank(k);
+
+        return (pos < b.count) && (b.keys[pos] == k);
+    }
+
+    /**
+     * Insert a key into the unrolled skip list.
+     *
+     * Insert a key into the block whose range covers it. If the block
+     * is full it is split in half first, and the new block gets a coin
+     * flipped index tower. Note: If the key exists already it will not
+     * be inserted again.
+     * @param k The key value to insert.
+     * @return The true/false depending on success or failure.
+     * @retval false The key already exists.
+     */
+    public boolean Insert(int k) {
+        SkipListIndexNode[] path;
+        SkipListBlock b, newBlock;
+        int pos;
+
+        path = new SkipListIndexNode[indexHeight];
+        b = SearchBlock(k, path);
+        pos = b.Rank(k);
+
+        if ((pos < b.count) && (b.keys[pos] == k)) {
+            return false;
+        }
+
+        if (b.count == blockCapacity) {
+            newBlock = SplitBlock(b, path);
+            if (pos > b.count) {
+                pos = pos - b.count;
+                b = newBlock;
+            }
+        }
+
+        System.arraycopy(b.keys, pos, b.keys, pos + 1, b.count - pos);
+        b.keys[pos] = k;
+        b.count = b.count + 1;
+        numKeys = numKeys + 1;
+
+        return true;
+    }
+
+    /**
+     * Remove a key from the unrolled skip list.
+     *
+     * Remove a key from its block, merging the block with a neighbor
+     * when it falls below a quarter full.
+     * @param k The key to remove.
+     * @return The true/false depending on success or failure.
+     * @retval false Failed to find the given key.
+     */
+    public boolean Remove(int k) {
+        SkipListBlock b;
+        int pos;
+
+        b = SearchBlock(k, null);
+        pos = b.Rank(k);
+
+        if ((pos >= b.count) || (b.keys[pos] != k)) {
+            return false;
+        }
+
+        System.arraycopy(b.keys, pos + 1, b.keys, pos, b.count - pos - 1);
+        b.count = b.count - 1;
+        numKeys = numKeys - 1;
+
+        if (b.count < (blockCapacity / 4)) {
+            if ((b.blockAfter != null) &&
+                ((b.count + b.blockAfter.count) <= blockCapacity)) {
+                MergeBlocks(b, b.blockAfter);
+            } else if ((b.blockBefore != null) &&
+                       ((b.blockBefore.count + b.count) <= blockCapacity)) {
+                MergeBlocks(b.blockBefore, b);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Obtain the keys in a range.
+     *
+     * Obtain every key which is greater than or equal to lo and less
+     * than or equal to hi. The range is found with a single search for
+     * lo followed by a walk along the blocks, copying the keys of each
+     * block with one System.arraycopy rather than one key at a time.
+     * @param lo The smallest key of the range.
+     * @param hi The largest key of the range.
+     * @return The keys of the range in increasing order.
+     */
+    public int[] Range(int lo, int hi) {
+        SkipListBlock first, b;
+        int[] keys;
+        int start, end, count;
+
+        if (lo > hi) {
+            return new int[0];
+        }
+
+        first = SearchBlock(lo, null);
+        start = first.Rank(lo);
+
+        count = 0;
+        b = first;
+        while (b != null) {
+            end = RangeEnd(b, hi);
+            count = count + (end - ((b == first) ? start : 0));
+            if (end < b.count) {
+                break;
+            }
+            b = b.blockAfter;
+        }
+
+        keys = new int[count];
+
+        count = 0;
+        b = first;
+        while (count < keys.length) {
+            end = RangeEnd(b, hi);
+            if (b == first) {
+                System.arraycopy(b.keys, start, keys, 0, end - start);
+                count = end - start;
+            } else {
+                System.arraycopy(b.keys, 0, keys, count, end);
+                count = count + end;
+            }
+            b = b.blockAfter;
+        }
+
+        return keys;
+    }
+
+    /**
+     * Obtain the number of keys.
+     *
+     * @return The number of keys in the unrolled skip list.
+     */
+    public int GetSize() {
+        return numKeys;
+    }
+
+    /**
+     * Obtain the number of blocks.
+     *
+     * @return The number of blocks on level zero.
+     */
+    public int GetNumBlocks() {
+        return numBlocks;
+    }
+
+    /**
+     * Obtain the number of levels.
+     *
+     * Obtain the number of levels, counting the level of blocks as one
+     * of the levels.
+     * @return Number of levels in the unrolled skip list.
+     */
+    public int GetNumLevels() {
+        return indexHeight + 1;
+    }
+
+    /**
+     * Seed the coin.
+     *
+     * Seed the coin flipped for the index towers of new blocks so that
+     * the same sequence of operations always builds the same towers.
+     * @param seed The seed for the coin.
+     */
+    public void SetSeed(long seed) {
+        rand.setSeed(seed);
+    }
+
+    /**
+     * Search for the block of a key.
+     *
+     * Descend the index levels to the block whose smallest key is the
+     * largest one less than or equal to the given key, or the first
+     * block if there is no such block.
+     * @param k The key value to search for.
+     * @param path Filled in with the index node the search left each
+     * index level from (lowest index level first), or null.
+     * @return The block whose range covers the key.
+     */
+    private SkipListBlock SearchBlock(int k, SkipListIndexNode[] path) {
+        SkipListIndexNode p;
+        int level;
+
+        p = topHeadNode;
+        level = indexHeight - 1;
+
+        while (true) {
+            while ((p.nodeAfter != null) &&
+                   (p.nodeAfter.block.keys[0] <= k)) {
+                p = p.nodeAfter;
+            }
+
+            if (path != null) {
+                path[level] = p;
+            }
+
+            if (p.nodeBelow == null) {
+                return p.block;
+            }
+
+            p = p.nodeBelow;
+            level = level - 1;
+        }
+    }
+
+    /**
+     * Find the end of a range in a block.
+     *
+     * @param b The block.
+     * @param hi The largest key of the range.
+     * @return The number of keys in the block which are less than or
+     * equal to hi.
+     */
+    private int RangeEnd(SkipListBlock b, int hi) {
+        int end;
+
+        end = b.Rank(hi);
+        if ((end < b.count) && (b.keys[end] == hi)) {
+            end = end + 1;
+        }
+
+        return end;
+    }
+
+    /**
+     * Split a full block.
+     *
+     * Move the upper half of the keys of a block into a new block after
+     * it and give the new block an index tower. The index nodes of the
+     * new block go right after the path nodes, as the smallest key of
+     * the new block is between the key searched for and the smallest
+     * key of the index node after each path node.
+     * @param b The full block to split.
+     * @param path The path from SearchBlock for a key in the block.
+     * @return The new block.
+     */
+    private SkipListBlock SplitBlock(SkipListBlock b,
+        SkipListIndexNode[] path) {
+
+        SkipListBlock newBlock;
+        SkipListIndexNode below, node;
+        int half, level;
+
+        half = b.count / 2;
+
+        newBlock = new SkipListBlock(blockCapacity);
+        System.arraycopy(b.keys, half, newBlock.keys, 0, b.count - half);
+        newBlock.count = b.count - half;
+        b.count = half;
+
+        newBlock.blockBefore = b;
+        newBlock.blockAfter = b.blockAfter;
+        if (b.blockAfter != null) {
+            b.blockAfter.blockBefore = newBlock;
+        }
+        b.blockAfter = newBlock;
+        numBlocks = numBlocks + 1;
+
+        // Every block is on the lowest index level, and each level
+        // above that is added while the coin lands heads.
+        below = null;
+        level = 0;
+        do {
+            node = new SkipListIndexNode(newBlock, below);
+            if (level < path.length) {
+                node.nodeAfter = path[level].nodeAfter;
+                path[level].nodeAfter = node;
+            } else {
+                topHeadNode = new SkipListIndexNode(firstBlock, topHeadNode);
+                topHeadNode.nodeAfter = node;
+                indexHeight = indexHeight + 1;
+            }
+            below = node;
+            level = level + 1;
+        } while (rand.nextBoolean());
+
+        return newBlock;
+    }
+
+    /**
+     * Merge two neighboring blocks.
+     *
+     * Move all of the keys of a block into the block before it and
+     * remove the emptied block along with its index tower.
+     * @param left The block to move the keys into.
+     * @param right The block after left to remove.
+     */
+    private void MergeBlocks(SkipListBlock left, SkipListBlock right) {
+        SkipListIndexNode p;
+        int minKey;
+
+        // An empty block still has its last key in keys[0], which is
+        // where its index nodes are ordered.
+        minKey = right.keys[0];
+
+        p = topHeadNode;
+        while (p != null) {
+            while ((p.nodeAfter != null) && (p.nodeAfter.block != right) &&
+                   (p.nodeAfter.block.keys[0] < minKey)) {
+                p = p.nodeAfter;
+            }
+            if ((p.nodeAfter != null) && (p.nodeAfter.block == right)) {
+                p.nodeAfter = p.nodeAfter.nodeAfter;
+            }
+            p = p.nodeBelow;
+        }
+
+        while ((indexHeight > 1) && (topHeadNode.nodeAfter == null)) {
+            topHeadNode = topHeadNode.nodeBelow;
+            indexHeight = indexHeight - 1;
+        }
+
+        System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+        left.count = left.count + right.count;
+
+        left.blockAfter = right.blockAfter;
+        if (right.blockAfter != null) {
+            right.blockAfter.blockBefore = left;
+        }
+        numBlocks = numBlocks - 1;
+    }
+}